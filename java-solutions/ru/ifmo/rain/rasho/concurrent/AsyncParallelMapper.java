@@ -0,0 +1,27 @@
+package ru.ifmo.rain.rasho.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * {@link ParallelMapper} supporting non-blocking mapping.
+ *
+ * @author Rasho Elizaveta
+ */
+public interface AsyncParallelMapper extends ParallelMapper {
+    /**
+     * Maps function {@code f} over specified {@code args} without blocking the calling thread.
+     * Cancellation of the returned future removes the tasks, which have not been started yet.
+     *
+     * @param f    mapping function
+     * @param args values to map
+     * @param <T>  type of values
+     * @param <R>  type of results
+     * @return future completed with the list of mapped values or with a {@link RuntimeException}
+     * thrown by {@code f}
+     */
+    <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args);
+}
@@ -0,0 +1,42 @@
+package ru.ifmo.rain.rasho.concurrent;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Monoid over {@code double} values used by primitive reductions of {@link IterativeParallelism}.
+ *
+ * @author Rasho Elizaveta
+ */
+public class DoubleMonoid {
+    private final double identity;
+    private final DoubleBinaryOperator operator;
+
+    /**
+     * Creates a new monoid.
+     *
+     * @param identity identity element
+     * @param operator associative operator
+     */
+    public DoubleMonoid(final double identity, final DoubleBinaryOperator operator) {
+        this.identity = identity;
+        this.operator = operator;
+    }
+
+    /**
+     * Returns identity element of this monoid.
+     *
+     * @return identity element
+     */
+    public double getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Returns associative operator of this monoid.
+     *
+     * @return associative operator
+     */
+    public DoubleBinaryOperator getOperator() {
+        return operator;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.ifmo.rain.rasho.concurrent;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Monoid over {@code int} values used by primitive reductions of {@link IterativeParallelism}.
+ *
+ * @author Rasho Elizaveta
+ */
+public class IntMonoid {
+    private final int identity;
+    private final IntBinaryOperator operator;
+
+    /**
+     * Creates a new monoid.
+     *
+     * @param identity identity element
+     * @param operator associative operator
+     */
+    public IntMonoid(final int identity, final IntBinaryOperator operator) {
+        this.identity = identity;
+        this.operator = operator;
+    }
+
+    /**
+     * Returns identity element of this monoid.
+     *
+     * @return identity element
+     */
+    public int getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Returns associative operator of this monoid.
+     *
+     * @return associative operator
+     */
+    public IntBinaryOperator getOperator() {
+        return operator;
+    }
+}
@@ -2,14 +2,47 @@ package ru.ifmo.rain.rasho.concurrent;
 
 import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+import ru.ifmo.rain.rasho.concurrent.distributed.RemoteFunction;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -20,14 +53,63 @@ import java.util.stream.Stream;
 @SuppressWarnings("unused")
 public class IterativeParallelism implements AdvancedIP {
 
+    /**
+     * Number of threads, which makes an operation choose the degree of parallelism itself.
+     * The choice is based on the number of values and on the cost per value measured
+     * by the previous calls with the same function.
+     */
+    public static final int AUTO_THREADS = -1;
+
+    private static final double DEFAULT_VALUE_NANOS = 100;
+    private static final double MIN_CHUNK_NANOS = 100_000;
+    private static final double COST_DECAY = 0.5;
+    private static final ClassValue<AtomicLong> VALUE_NANOS = new ClassValue<>() {
+        @Override
+        protected AtomicLong computeValue(Class<?> type) {
+            return new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+        }
+    };
+    private static final Function<Object, String> TO_STRING = Object::toString;
+    private static final long MAX_JOIN_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int JOIN_WINDOW_SIZE = 1 << 16;
+    private static final int CHUNKS_PER_WORKER = 8;
+
+    /**
+     * The way chunks are executed, when no {@link ParallelMapper} is supplied.
+     */
+    public enum ExecutionMode {
+        /**
+         * Every chunk is processed by a new {@link Thread}.
+         */
+        THREADS,
+        /**
+         * Chunks are processed by long-lived daemon threads shared by all instances,
+         * the calling thread processes one of the chunks itself.
+         */
+        SHARED_POOL
+    }
+
     private final ParallelMapper mapper;
+    private final ExecutionMode mode;
 
     /**
      * Default constructor.
      * Creates an new {@code IterativeParallelism} instance operating without {@link ParallelMapper}.
      */
     public IterativeParallelism() {
-        mapper = null;
+        this(ExecutionMode.THREADS);
+    }
+
+    /**
+     * Execution mode constructor.
+     * Creates an new {@code IterativeParallelism} instance operating without {@link ParallelMapper}
+     * in the specified {@link ExecutionMode}.
+     *
+     * @param mode {@link ExecutionMode} of chunks
+     */
+    public IterativeParallelism(ExecutionMode mode) {
+        this.mapper = null;
+        this.mode = mode;
     }
 
     /**
@@ -38,6 +120,15 @@ public class IterativeParallelism implements AdvancedIP {
      */
     public IterativeParallelism(ParallelMapper mapper) {
         this.mapper = mapper;
+        this.mode = null;
+    }
+
+    private static class SharedPool {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "IterativeParallelism-shared");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     private <T> List<Stream<T>> shareTasks(int threads, List<T> tasks) {
@@ -57,34 +148,192 @@ public class IterativeParallelism implements AdvancedIP {
         return sharedTasks;
     }
 
-    private <T, U, R> R baseOperation(int threadCount, List<T> values,
-                                      Function<Stream<T>, U> task,
-                                      Function<Stream<U>, R> resReduce) throws InterruptedException {
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int chunk, int fromIndex, int toIndex);
+    }
+
+    private int getWorkerCount(int threadCount, int size, Object callSite) {
+        if (threadCount == AUTO_THREADS) {
+            threadCount = getAutoThreadCount(size, callSite);
+        }
         if (threadCount < 1) {
             throw new IllegalArgumentException("Incorrect number of threads: must be positive");
         }
-        threadCount = Math.min(threadCount, values.size());
+        return Math.max(1, Math.min(threadCount, size));
+    }
 
-        List<Stream<T>> sharedTasks = shareTasks(threadCount, values);
-        List<U> threadResult;
+    /**
+     * Returns the number of contiguous chunks {@code size} values are split into for {@code workerCount} workers.
+     * Several chunks per worker let the workers that finish early take the chunks left by slow ones.
+     */
+    private static int getChunkCount(int workerCount, int size) {
+        return workerCount == 1 ? 1 : Math.min(size, workerCount * CHUNKS_PER_WORKER);
+    }
 
-        if (mapper != null) {
-            threadResult = mapper.map(task, sharedTasks);
+    /**
+     * Returns the cost per value measured for the class of the call site or {@code NaN}, if it is not measured yet.
+     * Costs are kept in the classes themselves, so they do not keep classes from being unloaded.
+     */
+    private static double getValueNanos(Object callSite) {
+        return Double.longBitsToDouble(VALUE_NANOS.get(callSite.getClass()).get());
+    }
+
+    private int getAutoThreadCount(int size, Object callSite) {
+        double valueNanos = callSite == null ? Double.NaN : getValueNanos(callSite);
+        if (Double.isNaN(valueNanos)) {
+            valueNanos = DEFAULT_VALUE_NANOS;
+        }
+        double threadCount = Math.floor(valueNanos * size / MIN_CHUNK_NANOS);
+        return (int) Math.max(1, Math.min(threadCount, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private void updateCost(Object callSite, int size, long nanos) {
+        if (callSite != null && size > 0) {
+            double valueNanos = (double) nanos / size;
+            VALUE_NANOS.get(callSite.getClass()).updateAndGet(bits -> {
+                double previous = Double.longBitsToDouble(bits);
+                return Double.doubleToRawLongBits(Double.isNaN(previous)
+                        ? valueNanos
+                        : previous * COST_DECAY + valueNanos * (1 - COST_DECAY));
+            });
+        }
+    }
+
+    /**
+     * Runs {@code task} over {@link #getChunkCount(int, int) chunks} of {@code [0, size)}
+     * and updates the cost per value of the {@code callSite}.
+     */
+    private void runChunks(int workerCount, int size, Object callSite, ChunkTask task) throws InterruptedException {
+        updateCost(callSite, size, timeChunks(workerCount, size, task));
+    }
+
+    /**
+     * Runs {@code task} over {@link #getChunkCount(int, int) chunks} of {@code [0, size)}
+     * and returns the total time spent in chunks.
+     * Every worker claims the next chunk from a shared cursor until all chunks are claimed.
+     */
+    private long timeChunks(int workerCount, int size, ChunkTask task) throws InterruptedException {
+        int chunkCount = getChunkCount(workerCount, size);
+        int chunkSize = size / chunkCount;
+        int addChunks = size - chunkSize * chunkCount;
+        AtomicInteger nextChunk = new AtomicInteger();
+        LongAdder chunkNanos = new LongAdder();
+
+        List<Runnable> workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(() -> {
+                long start = System.nanoTime();
+                for (int chunk = nextChunk.getAndIncrement(); chunk < chunkCount; chunk = nextChunk.getAndIncrement()) {
+                    int from = chunk * chunkSize + Math.min(chunk, addChunks);
+                    task.run(chunk, from, from + chunkSize + (chunk < addChunks ? 1 : 0));
+                }
+                chunkNanos.add(System.nanoTime() - start);
+            });
+        }
+
+        runChunks(workers);
+        return chunkNanos.sum();
+    }
+
+    private void runChunks(List<Runnable> chunks) throws InterruptedException {
+        if (chunks.size() == 1) {
+            chunks.get(0).run();
+        } else if (mapper != null) {
+            mapper.map(chunk -> {
+                chunk.run();
+                return null;
+            }, chunks);
+        } else if (mode == ExecutionMode.SHARED_POOL) {
+            runOnSharedPool(chunks);
         } else {
+            AtomicReference<Throwable> failure = new AtomicReference<>();
             List<Thread> threads = new ArrayList<>();
-            threadResult = new ArrayList<>(Collections.nCopies(threadCount, null));
-            for (int i = 0; i < threadCount; i++) {
-                final int finalPos = i;
-                Thread thread = new Thread(() -> threadResult.set(finalPos, task.apply(sharedTasks.get(finalPos))));
+            for (Runnable chunk : chunks) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        chunk.run();
+                    } catch (Throwable e) {
+                        if (!failure.compareAndSet(null, e)) {
+                            failure.get().addSuppressed(e);
+                        }
+                    }
+                });
                 threads.add(thread);
                 thread.start();
             }
             joinThreads(threads);
+            if (failure.get() != null) {
+                rethrow(failure.get());
+            }
         }
+    }
+
+    private <T, U, R> R baseOperation(int threadCount, List<T> values, Object callSite,
+                                      Function<Stream<T>, U> task,
+                                      Function<Stream<U>, R> resReduce) throws InterruptedException {
+        int workerCount = getWorkerCount(threadCount, values.size(), callSite);
+        int chunkCount = getChunkCount(workerCount, values.size());
+        List<U> threadResult = new ArrayList<>(Collections.nCopies(chunkCount, null));
+        runChunks(workerCount, values.size(), callSite,
+                (chunk, from, to) -> threadResult.set(chunk, task.apply(values.subList(from, to).stream())));
 
         return resReduce.apply(threadResult.stream());
     }
 
+    private void runOnSharedPool(List<Runnable> chunks) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable chunk : chunks.subList(1, chunks.size())) {
+            futures.add(SharedPool.EXECUTOR.submit(chunk));
+        }
+
+        try {
+            chunks.get(0).run();
+            for (Future<?> future : futures) {
+                waitFuture(future);
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private void waitFuture(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            rethrow(e.getCause());
+        }
+    }
+
+    private static void rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+    }
+
+    private <T, U, R> CompletableFuture<R> baseOperationAsync(int threadCount, List<T> values, Object callSite,
+                                                               Function<Stream<T>, U> task,
+                                                               Function<Stream<U>, R> resReduce) {
+        if (!(mapper instanceof AsyncParallelMapper)) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return baseOperation(threadCount, values, callSite, task, resReduce);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                }
+            }, SharedPool.EXECUTOR);
+        }
+        int chunkCount = getChunkCount(getWorkerCount(threadCount, values.size(), callSite), values.size());
+        List<Stream<T>> sharedTasks = shareTasks(chunkCount, values);
+        return ((AsyncParallelMapper) mapper).mapAsync(task, sharedTasks)
+                .thenApply(threadResult -> resReduce.apply(threadResult.stream()));
+    }
+
     private void joinThreads(List<Thread> threads) throws InterruptedException {
         InterruptedException exception = null;
         for (Thread thread : threads) {
@@ -104,7 +353,12 @@ public class IterativeParallelism implements AdvancedIP {
 
     @Override
     public <T> T maximum(int threads, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
-        return baseOperation(threads, values,
+        return maximum(threads, values, comparator, comparator);
+    }
+
+    private <T> T maximum(int threads, List<? extends T> values, Comparator<? super T> comparator,
+                          Object callSite) throws InterruptedException {
+        return baseOperation(threads, values, callSite,
                 stream -> max(stream, comparator),
                 stream -> max(stream, comparator));
     }
@@ -116,43 +370,296 @@ public class IterativeParallelism implements AdvancedIP {
 
     @Override
     public <T> T minimum(int threads, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
-        return maximum(threads, values, Collections.reverseOrder(comparator));
+        return maximum(threads, values, Collections.reverseOrder(comparator), comparator);
     }
 
     @Override
     public <T> boolean all(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return baseOperation(threads, values,
-                stream -> stream.allMatch(predicate),
-                stream -> stream.allMatch(Boolean::booleanValue));
+        return !any(threads, values, predicate.negate(), predicate);
     }
 
     @Override
     public <T> boolean any(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return !all(threads, values, predicate.negate());
+        return any(threads, values, predicate, predicate);
     }
 
+    private <T> boolean any(int threads, List<? extends T> values, Predicate<? super T> predicate,
+                            Object callSite) throws InterruptedException {
+        AtomicBoolean found = new AtomicBoolean();
+        long nanos = timeChunks(getWorkerCount(threads, values.size(), callSite), values.size(), (chunk, from, to) -> {
+            Iterator<? extends T> iterator = values.subList(from, to).iterator();
+            while (!found.get() && iterator.hasNext()) {
+                if (predicate.test(iterator.next())) {
+                    found.set(true);
+                }
+            }
+        });
+        return isFound(found, callSite, values.size(), nanos);
+    }
+
+    /**
+     * Checks whether any index in {@code [0, size)} matches.
+     * Once a chunk finds a match, other chunks stop before testing their next index.
+     */
+    private boolean findAny(int threads, int size, Object callSite, IntPredicate matches) throws InterruptedException {
+        AtomicBoolean found = new AtomicBoolean();
+        long nanos = timeChunks(getWorkerCount(threads, size, callSite), size, (chunk, from, to) -> {
+            for (int i = from; i < to && !found.get(); i++) {
+                if (matches.test(i)) {
+                    found.set(true);
+                }
+            }
+        });
+        return isFound(found, callSite, size, nanos);
+    }
+
+    /**
+     * Returns whether a match was found. Only a search over all the values measures their cost,
+     * chunks stopped by a match would underestimate it.
+     */
+    private boolean isFound(AtomicBoolean found, Object callSite, int size, long nanos) {
+        if (found.get()) {
+            return true;
+        }
+        updateCost(callSite, size, nanos);
+        return false;
+    }
+
+    /**
+     * Joins string representations of values into a single char array of the exact length.
+     * The first parallel pass sums lengths of string representations of every chunk, a prefix sum over them gives
+     * the offset of every chunk, and the second parallel pass converts the values again and copies them in place,
+     * so no string representations are kept between the passes.
+     *
+     * @throws IllegalStateException if string representations of values changed between the passes
+     */
     @Override
     public String join(int threads, List<?> values) throws InterruptedException {
-        return baseOperation(threads, values,
-                stream -> stream.map(Object::toString).collect(Collectors.joining()),
-                stream -> stream.collect(Collectors.joining()));
+        int workerCount = getWorkerCount(threads, values.size(), TO_STRING);
+        int chunkCount = getChunkCount(workerCount, values.size());
+        long[] offsets = new long[chunkCount + 1];
+        runChunks(workerCount, values.size(), TO_STRING, (chunk, from, to) -> {
+            long length = 0;
+            for (Object value : values.subList(from, to)) {
+                length += TO_STRING.apply(value).length();
+            }
+            offsets[chunk + 1] = length;
+        });
+        for (int i = 0; i < chunkCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        if (offsets[chunkCount] > MAX_JOIN_LENGTH) {
+            throw new OutOfMemoryError("Joined string is too long: " + offsets[chunkCount]);
+        }
+
+        char[] chars = new char[(int) offsets[chunkCount]];
+        runChunks(workerCount, values.size(), null, (chunk, from, to) -> {
+            int position = (int) offsets[chunk];
+            for (Object value : values.subList(from, to)) {
+                String string = TO_STRING.apply(value);
+                if (position + string.length() > offsets[chunk + 1]) {
+                    throw new IllegalStateException("String representations of values changed while joining");
+                }
+                string.getChars(0, string.length(), chars, position);
+                position += string.length();
+            }
+            if (position != offsets[chunk + 1]) {
+                throw new IllegalStateException("String representations of values changed while joining");
+            }
+        });
+        return new String(chars);
     }
 
-    private <T, R> List<R> createBijectionByFunction(Function<Stream<? extends T>, Stream<? extends R>> bijectionFunction,
-                                                     int threads, List<? extends T> values) throws InterruptedException {
-        return baseOperation(threads, values,
-                stream -> bijectionFunction.apply(stream).collect(Collectors.toList()),
-                stream -> stream.flatMap(List::stream).collect(Collectors.toList()));
+    /**
+     * Joins string representations of values into the {@code sink} without building the whole string.
+     * Values are converted in parallel by windows of a bounded size and appended in order.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to join
+     * @param sink    {@link Appendable} to append string representations to
+     * @throws IOException          if an I/O error occurred while appending
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public void join(int threads, List<?> values, Appendable sink) throws IOException, InterruptedException {
+        for (int windowFrom = 0; windowFrom < values.size(); windowFrom += JOIN_WINDOW_SIZE) {
+            List<?> window = values.subList(windowFrom, Math.min(values.size(), windowFrom + JOIN_WINDOW_SIZE));
+            String[] strings = new String[window.size()];
+            runChunks(getWorkerCount(threads, window.size(), TO_STRING), window.size(), TO_STRING,
+                    (chunk, from, to) -> toStrings(window, from, to, strings));
+            for (String string : strings) {
+                sink.append(string);
+            }
+        }
+    }
+
+    private static void toStrings(List<?> values, int from, int to, String[] strings) {
+        int position = from;
+        for (Object value : values.subList(from, to)) {
+            strings[position++] = TO_STRING.apply(value);
+        }
     }
 
     @Override
     public <T> List<T> filter(int threads, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return createBijectionByFunction(stream -> stream.filter(predicate), threads, values);
+        int workerCount = getWorkerCount(threads, values.size(), predicate);
+        int chunkCount = getChunkCount(workerCount, values.size());
+        boolean[] matches = new boolean[values.size()];
+        int[] offsets = new int[chunkCount + 1];
+        runChunks(workerCount, values.size(), predicate, (chunk, from, to) -> {
+            int count = 0;
+            int i = from;
+            for (T value : values.subList(from, to)) {
+                if (predicate.test(value)) {
+                    matches[i] = true;
+                    count++;
+                }
+                i++;
+            }
+            offsets[chunk + 1] = count;
+        });
+        for (int i = 0; i < chunkCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        Object[] results = new Object[offsets[chunkCount]];
+        runChunks(workerCount, values.size(), null, (chunk, from, to) -> {
+            int position = offsets[chunk];
+            int i = from;
+            for (T value : values.subList(from, to)) {
+                if (matches[i++]) {
+                    results[position++] = value;
+                }
+            }
+        });
+        return asList(results);
     }
 
     @Override
     public <T, R> List<R> map(int threads, List<? extends T> values, Function<? super T, ? extends R> function) throws InterruptedException {
-        return createBijectionByFunction(stream -> stream.map(function), threads, values);
+        Object[] results = new Object[values.size()];
+        runChunks(getWorkerCount(threads, values.size(), function), values.size(), function, (chunk, from, to) -> {
+            int i = from;
+            for (T value : values.subList(from, to)) {
+                results[i++] = function.apply(value);
+            }
+        });
+        return asList(results);
+    }
+
+    /**
+     * Returns {@code k} greatest values in descending order.
+     * Every chunk keeps its own bounded heap of candidates, the heaps are merged by the calling thread.
+     *
+     * @param threads    number of concurrent threads
+     * @param values     values to get greatest of
+     * @param k          maximal number of values to return
+     * @param comparator value comparator
+     * @param <T>        type of values
+     * @return {@code min(k, values.size())} greatest values in descending order
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T> List<T> topK(int threads, List<? extends T> values, int k, Comparator<? super T> comparator) throws InterruptedException {
+        if (k < 0) {
+            throw new IllegalArgumentException("Incorrect number of values: must be non-negative");
+        }
+        int workerCount = getWorkerCount(threads, values.size(), comparator);
+        if (k == 0) {
+            return new ArrayList<>();
+        }
+        int chunkCount = getChunkCount(workerCount, values.size());
+        List<PriorityQueue<T>> heaps = new ArrayList<>(Collections.nCopies(chunkCount, null));
+        runChunks(workerCount, values.size(), comparator, (chunk, from, to) -> {
+            PriorityQueue<T> heap = new PriorityQueue<>(comparator);
+            for (T value : values.subList(from, to)) {
+                offer(heap, value, k, comparator);
+            }
+            heaps.set(chunk, heap);
+        });
+
+        PriorityQueue<T> result = new PriorityQueue<>(comparator);
+        for (PriorityQueue<T> heap : heaps) {
+            for (T value : heap) {
+                offer(result, value, k, comparator);
+            }
+        }
+        List<T> greatest = new ArrayList<>(result);
+        greatest.sort(Collections.reverseOrder(comparator));
+        return greatest;
+    }
+
+    private static <T> void offer(PriorityQueue<T> heap, T value, int k, Comparator<? super T> comparator) {
+        if (heap.size() < k) {
+            heap.add(value);
+        } else if (comparator.compare(value, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(value);
+        }
+    }
+
+    /**
+     * Returns values sorted by stable parallel merge sort.
+     * Chunks are sorted concurrently, then adjacent runs are merged pairwise, a round of merges at a time.
+     *
+     * @param threads    number of concurrent threads
+     * @param values     values to sort
+     * @param comparator value comparator
+     * @param <T>        type of values
+     * @return new list of sorted values
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T> List<T> sort(int threads, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
+        int workerCount = getWorkerCount(threads, values.size(), comparator);
+        int chunkCount = getChunkCount(workerCount, values.size());
+        @SuppressWarnings("unchecked")
+        final T[] array = (T[]) values.toArray();
+        final int[] chunkBounds = new int[chunkCount + 1];
+        runChunks(workerCount, array.length, comparator, (chunk, from, to) -> {
+            Arrays.sort(array, from, to, comparator);
+            chunkBounds[chunk + 1] = to;
+        });
+
+        T[] sorted = array;
+        int[] bounds = chunkBounds;
+        @SuppressWarnings("unchecked")
+        T[] buffer = (T[]) new Object[array.length];
+        for (int runCount = chunkCount; runCount > 1; runCount = (runCount + 1) / 2) {
+            final T[] source = sorted;
+            final T[] target = buffer;
+            final int[] runs = bounds;
+            final int lastRun = runCount;
+            int pairCount = (runCount + 1) / 2;
+            runChunks(Math.min(workerCount, pairCount), pairCount, null, (chunk, from, to) -> {
+                for (int pair = from; pair < to; pair++) {
+                    merge(source, runs[2 * pair], runs[Math.min(2 * pair + 1, lastRun)],
+                            runs[Math.min(2 * pair + 2, lastRun)], target, comparator);
+                }
+            });
+
+            bounds = new int[pairCount + 1];
+            for (int i = 0; i <= pairCount; i++) {
+                bounds[i] = runs[Math.min(2 * i, lastRun)];
+            }
+            sorted = target;
+            buffer = source;
+        }
+        return asList(sorted);
+    }
+
+    private static <T> void merge(T[] source, int from, int middle, int to, T[] target, Comparator<? super T> comparator) {
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right == to || left < middle && comparator.compare(source[left], source[right]) <= 0) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> asList(Object[] results) {
+        return (List<T>) Arrays.asList(results);
     }
 
     private <T> T getMonoidReduce(Stream<T> stream, Monoid<T> monoid) {
@@ -161,15 +668,750 @@ public class IterativeParallelism implements AdvancedIP {
 
     @Override
     public <T> T reduce(int threads, List<T> values, Monoid<T> monoid) throws InterruptedException {
-        return baseOperation(threads, values,
-                stream -> getMonoidReduce(stream, monoid),
-                stream -> getMonoidReduce(stream, monoid));
+        if (mapper != null) {
+            return reduceChunks(threads, values, monoid.getOperator(), new ChunkReducer<>(null, monoid));
+        }
+        return pipeline(threads, values).reduce(monoid);
     }
 
     @Override
     public <T, R> R mapReduce(int threads, List<T> values, Function<T, R> lift, Monoid<R> monoid) throws InterruptedException {
-        return baseOperation(threads, values,
+        if (mapper != null) {
+            return reduceChunks(threads, values, lift, new ChunkReducer<>(lift, monoid));
+        }
+        return pipeline(threads, values).map(lift).reduce(monoid);
+    }
+
+    /**
+     * Reduces chunks of values by the mapper and combines partial results in the order of chunks.
+     * The mapper gets the reducer itself instead of a closure over local state,
+     * so a distributed mapper can send it with the lift and the operator to other processes.
+     */
+    private <T, R> R reduceChunks(int threads, List<T> values, Object callSite,
+                                  ChunkReducer<T, R> reducer) throws InterruptedException {
+        int workerCount = getWorkerCount(threads, values.size(), callSite);
+        int chunkCount = getChunkCount(workerCount, values.size());
+        int chunkSize = values.size() / chunkCount;
+        int addChunks = values.size() - chunkSize * chunkCount;
+        List<List<T>> chunks = new ArrayList<>(chunkCount);
+        for (int chunk = 0, from = 0; chunk < chunkCount; chunk++) {
+            int to = from + chunkSize + (chunk < addChunks ? 1 : 0);
+            chunks.add(values.subList(from, to));
+            from = to;
+        }
+
+        R result = reducer.identity;
+        for (R partial : mapper.map(reducer, chunks)) {
+            result = reducer.operator.apply(result, partial);
+        }
+        return result;
+    }
+
+    /**
+     * Maps and reduces a whole chunk of values, the lift is omitted for plain reductions.
+     * It is a {@link RemoteFunction}, so it is sent to workers when the lift and the operator are serializable.
+     */
+    private static class ChunkReducer<T, R> implements RemoteFunction<List<T>, R> {
+        private static final long serialVersionUID = 1L;
+
+        private final Function<? super T, ? extends R> lift;
+        private final R identity;
+        private final BinaryOperator<R> operator;
+
+        ChunkReducer(Function<? super T, ? extends R> lift, Monoid<R> monoid) {
+            this.lift = lift;
+            identity = monoid.getIdentity();
+            operator = monoid.getOperator();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public R apply(List<T> chunk) {
+            R result = identity;
+            for (T value : chunk) {
+                result = operator.apply(result, lift == null ? (R) value : lift.apply(value));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Starts a {@link Pipeline} over {@code values}.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to process
+     * @param <T>     type of values
+     * @return pipeline without stages
+     */
+    public <T> Pipeline<T> pipeline(int threads, List<? extends T> values) {
+        return new Pipeline<>(threads, values.size(), null, (from, to, sink) -> {
+            for (T value : values.subList(from, to)) {
+                sink.accept(value);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Stage<T> {
+        void run(int fromIndex, int toIndex, Consumer<? super T> sink);
+    }
+
+    /**
+     * Chain of stages fused into a single parallel pass.
+     * Every chunk pushes its values through all the stages one value at a time,
+     * so no intermediate collections are built between stages.
+     *
+     * @param <T> type of values produced by the last stage
+     */
+    public class Pipeline<T> {
+        private final int threads;
+        private final int size;
+        private final Object callSite;
+        private final Stage<T> stage;
+
+        private Pipeline(int threads, int size, Object callSite, Stage<T> stage) {
+            this.threads = threads;
+            this.size = size;
+            this.callSite = callSite;
+            this.stage = stage;
+        }
+
+        /**
+         * Appends a stage passing only values satisfying the {@code predicate}.
+         *
+         * @param predicate filter predicate
+         * @return pipeline with the stage appended
+         */
+        public Pipeline<T> filter(Predicate<? super T> predicate) {
+            return new Pipeline<>(threads, size, predicate, (from, to, sink) -> stage.run(from, to, value -> {
+                if (predicate.test(value)) {
+                    sink.accept(value);
+                }
+            }));
+        }
+
+        /**
+         * Appends a stage applying the {@code function} to values.
+         *
+         * @param function mapping function
+         * @param <R>      type of mapped values
+         * @return pipeline with the stage appended
+         */
+        public <R> Pipeline<R> map(Function<? super T, ? extends R> function) {
+            return new Pipeline<>(threads, size, function,
+                    (from, to, sink) -> stage.run(from, to, value -> sink.accept(function.apply(value))));
+        }
+
+        /**
+         * Reduces values produced by the pipeline using monoid.
+         *
+         * @param monoid monoid to use
+         * @return values reduced by provided monoid or identity if no values produced
+         * @throws InterruptedException if executing thread was interrupted
+         */
+        public T reduce(Monoid<T> monoid) throws InterruptedException {
+            final BinaryOperator<T> operator = monoid.getOperator();
+            List<Accumulator<T>> partials = run(callSite == null ? operator : callSite,
+                    () -> new Accumulator<>(monoid), accumulator -> accumulator);
+            T result = monoid.getIdentity();
+            for (Accumulator<T> partial : partials) {
+                result = operator.apply(result, partial.value);
+            }
+            return result;
+        }
+
+        /**
+         * Returns values produced by the pipeline in the order of the source values.
+         *
+         * @return list of produced values
+         * @throws InterruptedException if executing thread was interrupted
+         */
+        public List<T> toList() throws InterruptedException {
+            List<List<T>> parts = run(callSite, ArrayList::new, part -> part::add);
+            int length = 0;
+            for (List<T> part : parts) {
+                length += part.size();
+            }
+            Object[] results = new Object[length];
+            int position = 0;
+            for (List<T> part : parts) {
+                for (T value : part) {
+                    results[position++] = value;
+                }
+            }
+            return asList(results);
+        }
+
+        private <A> List<A> run(Object callSite, Supplier<A> supplier,
+                                Function<A, Consumer<? super T>> sink) throws InterruptedException {
+            int workerCount = getWorkerCount(threads, size, callSite);
+            List<A> partials = new ArrayList<>(Collections.nCopies(getChunkCount(workerCount, size), null));
+            runChunks(workerCount, size, callSite, (chunk, from, to) -> {
+                A partial = supplier.get();
+                stage.run(from, to, sink.apply(partial));
+                partials.set(chunk, partial);
+            });
+            return partials;
+        }
+    }
+
+    private static class Accumulator<T> implements Consumer<T> {
+        private final BinaryOperator<T> operator;
+        private T value;
+
+        Accumulator(Monoid<T> monoid) {
+            operator = monoid.getOperator();
+            value = monoid.getIdentity();
+        }
+
+        @Override
+        public void accept(T t) {
+            value = operator.apply(value, t);
+        }
+    }
+
+    /**
+     * Maps and reduces values of the {@code source} using monoid with bounded memory.
+     * The calling thread reads values in blocks of {@code blockSize} values, while workers map and reduce
+     * the blocks read before. At most {@code maxBlocksInFlight} blocks are read and not reduced yet,
+     * partial results of blocks are combined in the order of blocks.
+     *
+     * @param threads           number of concurrent threads
+     * @param source            values to reduce
+     * @param blockSize         number of values in a block
+     * @param maxBlocksInFlight maximal number of blocks held in memory
+     * @param lift              mapping function
+     * @param monoid            monoid to use
+     * @param <T>               type of values
+     * @param <R>               type of result
+     * @return values reduced by provided monoid or identity if not values specified
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T, R> R mapReduce(int threads, Iterator<T> source, int blockSize, int maxBlocksInFlight,
+                              Function<T, R> lift, Monoid<R> monoid) throws InterruptedException {
+        if (blockSize < 1 || maxBlocksInFlight < 1) {
+            throw new IllegalArgumentException("Incorrect block size or number of blocks: must be positive");
+        }
+        BlockReducer<T, R> reducer = new BlockReducer<>(maxBlocksInFlight, lift, monoid);
+        List<Runnable> workers = Collections.nCopies(getWorkerCount(threads, maxBlocksInFlight, null), reducer::consume);
+        CompletableFuture<Void> consumers = CompletableFuture.runAsync(() -> {
+            try {
+                runChunks(workers);
+            } catch (InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        }, SharedPool.EXECUTOR);
+
+        try {
+            reducer.produce(source, blockSize);
+            reducer.finish();
+            waitFuture(consumers);
+        } catch (InterruptedException | RuntimeException | Error e) {
+            reducer.stop();
+            throw e;
+        }
+        return reducer.getResult();
+    }
+
+    /**
+     * Blocks of values read by a producer and mapped and reduced by consumers.
+     * A block holds its permit until its partial result is combined, and partial results are combined
+     * in the order of blocks by the consumer completing the next one.
+     */
+    private static class BlockReducer<T, R> {
+        private final Block<T> end = new Block<>(-1, null);
+        private final BlockingQueue<Block<T>> blocks;
+        private final Semaphore permits;
+        private final Object[] partials;
+        private final boolean[] ready;
+        private final Function<T, R> lift;
+        private final Monoid<R> monoid;
+
+        private volatile boolean stopped;
+        private Throwable failure;
+        private long nextCombined;
+        private R result;
+
+        BlockReducer(int maxBlocksInFlight, Function<T, R> lift, Monoid<R> monoid) {
+            this.lift = lift;
+            this.monoid = monoid;
+            blocks = new LinkedBlockingQueue<>();
+            permits = new Semaphore(maxBlocksInFlight);
+            partials = new Object[maxBlocksInFlight];
+            ready = new boolean[maxBlocksInFlight];
+            result = monoid.getIdentity();
+        }
+
+        void produce(Iterator<T> source, int blockSize) throws InterruptedException {
+            for (long index = 0; !stopped && source.hasNext(); index++) {
+                permits.acquire();
+                if (stopped) {
+                    return;
+                }
+                List<T> values = new ArrayList<>(blockSize);
+                while (values.size() < blockSize && source.hasNext()) {
+                    values.add(source.next());
+                }
+                blocks.add(new Block<>(index, values));
+            }
+        }
+
+        void finish() {
+            blocks.add(end);
+        }
+
+        void stop() {
+            stopped = true;
+            permits.release(partials.length);
+            blocks.add(end);
+        }
+
+        void consume() {
+            try {
+                for (Block<T> block = blocks.take(); block != end && !stopped; block = blocks.take()) {
+                    R partial = monoid.getIdentity();
+                    for (T value : block.values) {
+                        partial = monoid.getOperator().apply(partial, lift.apply(value));
+                    }
+                    combine(block.index, partial);
+                }
+                blocks.add(end);
+            } catch (InterruptedException e) {
+                fail(e);
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                fail(e);
+            }
+        }
+
+        private synchronized void combine(long index, R partial) {
+            partials[(int) (index % partials.length)] = partial;
+            ready[(int) (index % partials.length)] = true;
+            for (int slot = (int) (nextCombined % partials.length); ready[slot];
+                 slot = (int) (nextCombined % partials.length)) {
+                @SuppressWarnings("unchecked")
+                R next = (R) partials[slot];
+                result = monoid.getOperator().apply(result, next);
+                partials[slot] = null;
+                ready[slot] = false;
+                nextCombined++;
+                permits.release();
+            }
+        }
+
+        private void fail(Throwable e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            stop();
+        }
+
+        synchronized R getResult() throws InterruptedException {
+            if (failure instanceof InterruptedException) {
+                throw (InterruptedException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            return result;
+        }
+    }
+
+    private static class Block<T> {
+        private final long index;
+        private final List<T> values;
+
+        Block(long index, List<T> values) {
+            this.index = index;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Maps and reduces values of the {@code source} using monoid with bounded memory.
+     *
+     * @see #mapReduce(int, Iterator, int, int, Function, Monoid)
+     */
+    public <T, R> R mapReduce(int threads, Spliterator<T> source, int blockSize, int maxBlocksInFlight,
+                              Function<T, R> lift, Monoid<R> monoid) throws InterruptedException {
+        return mapReduce(threads, Spliterators.iterator(source), blockSize, maxBlocksInFlight, lift, monoid);
+    }
+
+    /**
+     * Maps and reduces values of the {@code source} using monoid with bounded memory.
+     *
+     * @see #mapReduce(int, Iterator, int, int, Function, Monoid)
+     */
+    public <T, R> R mapReduce(int threads, Stream<T> source, int blockSize, int maxBlocksInFlight,
+                              Function<T, R> lift, Monoid<R> monoid) throws InterruptedException {
+        return mapReduce(threads, source.iterator(), blockSize, maxBlocksInFlight, lift, monoid);
+    }
+
+    /**
+     * Reduces values of the {@code source} using monoid with bounded memory.
+     *
+     * @see #mapReduce(int, Iterator, int, int, Function, Monoid)
+     */
+    public <T> T reduce(int threads, Iterator<T> source, int blockSize, int maxBlocksInFlight,
+                        Monoid<T> monoid) throws InterruptedException {
+        return mapReduce(threads, source, blockSize, maxBlocksInFlight, Function.identity(), monoid);
+    }
+
+    /**
+     * Reduces values of the {@code source} using monoid with bounded memory.
+     *
+     * @see #mapReduce(int, Iterator, int, int, Function, Monoid)
+     */
+    public <T> T reduce(int threads, Spliterator<T> source, int blockSize, int maxBlocksInFlight,
+                        Monoid<T> monoid) throws InterruptedException {
+        return reduce(threads, Spliterators.iterator(source), blockSize, maxBlocksInFlight, monoid);
+    }
+
+    /**
+     * Reduces values of the {@code source} using monoid with bounded memory.
+     *
+     * @see #mapReduce(int, Iterator, int, int, Function, Monoid)
+     */
+    public <T> T reduce(int threads, Stream<T> source, int blockSize, int maxBlocksInFlight,
+                        Monoid<T> monoid) throws InterruptedException {
+        return reduce(threads, source.iterator(), blockSize, maxBlocksInFlight, monoid);
+    }
+
+    /**
+     * Reduces values using monoid without blocking the calling thread.
+     * Without an {@link AsyncParallelMapper} the blocking operation is run by a shared daemon thread.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param monoid  monoid to use
+     * @param <T>     type of values
+     * @return future of values reduced by provided monoid
+     */
+    public <T> CompletableFuture<T> reduceAsync(int threads, List<T> values, Monoid<T> monoid) {
+        return baseOperationAsync(threads, values, monoid.getOperator(),
+                stream -> getMonoidReduce(stream, monoid),
+                stream -> getMonoidReduce(stream, monoid));
+    }
+
+    /**
+     * Maps and reduces values using monoid without blocking the calling thread.
+     * Without an {@link AsyncParallelMapper} the blocking operation is run by a shared daemon thread.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param lift    mapping function
+     * @param monoid  monoid to use
+     * @param <T>     type of values
+     * @param <R>     type of result
+     * @return future of values mapped and reduced by provided monoid
+     */
+    public <T, R> CompletableFuture<R> mapReduceAsync(int threads, List<T> values, Function<T, R> lift, Monoid<R> monoid) {
+        return baseOperationAsync(threads, values, lift,
                 stream -> stream.map(lift).reduce(monoid.getIdentity(), monoid.getOperator()),
                 stream -> getMonoidReduce(stream, monoid));
     }
-}
\ No newline at end of file
+
+    private static void requireNonEmpty(int length) {
+        if (length == 0) {
+            throw new NoSuchElementException("No values are given");
+        }
+    }
+
+    /**
+     * Returns maximum of {@code int} values.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of given values
+     * @throws InterruptedException            if executing thread was interrupted
+     * @throws java.util.NoSuchElementException if not values are given
+     */
+    public int maximum(int threads, int[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        return reduce(threads, values, new IntMonoid(Integer.MIN_VALUE, Math::max));
+    }
+
+    /**
+     * Returns minimum of {@code int} values.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of given values
+     * @throws InterruptedException            if executing thread was interrupted
+     * @throws java.util.NoSuchElementException if not values are given
+     */
+    public int minimum(int threads, int[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        return reduce(threads, values, new IntMonoid(Integer.MAX_VALUE, Math::min));
+    }
+
+    /**
+     * Reduces {@code int} values using monoid.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param monoid  monoid to use
+     * @return values reduced by provided monoid or identity if not values specified
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int reduce(int threads, int[] values, IntMonoid monoid) throws InterruptedException {
+        return mapReduce(threads, values, IntUnaryOperator.identity(), monoid);
+    }
+
+    /**
+     * Maps and reduces {@code int} values using monoid.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param lift    mapping function
+     * @param monoid  monoid to use
+     * @return values reduced by provided monoid or identity if not values specified
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int mapReduce(int threads, int[] values, IntUnaryOperator lift, IntMonoid monoid) throws InterruptedException {
+        final IntBinaryOperator operator = monoid.getOperator();
+        int workerCount = getWorkerCount(threads, values.length, lift);
+        int chunkCount = getChunkCount(workerCount, values.length);
+        int[] partials = new int[chunkCount];
+        runChunks(workerCount, values.length, lift, (chunk, from, to) -> {
+            int result = monoid.getIdentity();
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsInt(result, lift.applyAsInt(values[i]));
+            }
+            partials[chunk] = result;
+        });
+
+        int result = monoid.getIdentity();
+        for (int partial : partials) {
+            result = operator.applyAsInt(result, partial);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether all {@code int} values satisfy predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether all values satisfy predicate or {@code true}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        return !findAny(threads, values.length, predicate, i -> !predicate.test(values[i]));
+    }
+
+    /**
+     * Returns whether any of {@code int} values satisfies predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether any value satisfies predicate or {@code false}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, int[] values, IntPredicate predicate) throws InterruptedException {
+        return findAny(threads, values.length, predicate, i -> predicate.test(values[i]));
+    }
+
+    /**
+     * Returns maximum of {@code long} values.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of given values
+     * @throws InterruptedException            if executing thread was interrupted
+     * @throws java.util.NoSuchElementException if not values are given
+     */
+    public long maximum(int threads, long[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        return reduce(threads, values, new LongMonoid(Long.MIN_VALUE, Math::max));
+    }
+
+    /**
+     * Returns minimum of {@code long} values.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of given values
+     * @throws InterruptedException            if executing thread was interrupted
+     * @throws java.util.NoSuchElementException if not values are given
+     */
+    public long minimum(int threads, long[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        return reduce(threads, values, new LongMonoid(Long.MAX_VALUE, Math::min));
+    }
+
+    /**
+     * Reduces {@code long} values using monoid.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param monoid  monoid to use
+     * @return values reduced by provided monoid or identity if not values specified
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long reduce(int threads, long[] values, LongMonoid monoid) throws InterruptedException {
+        return mapReduce(threads, values, LongUnaryOperator.identity(), monoid);
+    }
+
+    /**
+     * Maps and reduces {@code long} values using monoid.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param lift    mapping function
+     * @param monoid  monoid to use
+     * @return values reduced by provided monoid or identity if not values specified
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long mapReduce(int threads, long[] values, LongUnaryOperator lift, LongMonoid monoid) throws InterruptedException {
+        final LongBinaryOperator operator = monoid.getOperator();
+        int workerCount = getWorkerCount(threads, values.length, lift);
+        int chunkCount = getChunkCount(workerCount, values.length);
+        long[] partials = new long[chunkCount];
+        runChunks(workerCount, values.length, lift, (chunk, from, to) -> {
+            long result = monoid.getIdentity();
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsLong(result, lift.applyAsLong(values[i]));
+            }
+            partials[chunk] = result;
+        });
+
+        long result = monoid.getIdentity();
+        for (long partial : partials) {
+            result = operator.applyAsLong(result, partial);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether all {@code long} values satisfy predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether all values satisfy predicate or {@code true}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        return !findAny(threads, values.length, predicate, i -> !predicate.test(values[i]));
+    }
+
+    /**
+     * Returns whether any of {@code long} values satisfies predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether any value satisfies predicate or {@code false}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, long[] values, LongPredicate predicate) throws InterruptedException {
+        return findAny(threads, values.length, predicate, i -> predicate.test(values[i]));
+    }
+
+    /**
+     * Returns maximum of {@code double} values.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of given values
+     * @throws InterruptedException            if executing thread was interrupted
+     * @throws java.util.NoSuchElementException if not values are given
+     */
+    public double maximum(int threads, double[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        return reduce(threads, values, new DoubleMonoid(Double.NEGATIVE_INFINITY, Math::max));
+    }
+
+    /**
+     * Returns minimum of {@code double} values.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of given values
+     * @throws InterruptedException            if executing thread was interrupted
+     * @throws java.util.NoSuchElementException if not values are given
+     */
+    public double minimum(int threads, double[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        return reduce(threads, values, new DoubleMonoid(Double.POSITIVE_INFINITY, Math::min));
+    }
+
+    /**
+     * Reduces {@code double} values using monoid.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param monoid  monoid to use
+     * @return values reduced by provided monoid or identity if not values specified
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public double reduce(int threads, double[] values, DoubleMonoid monoid) throws InterruptedException {
+        return mapReduce(threads, values, DoubleUnaryOperator.identity(), monoid);
+    }
+
+    /**
+     * Maps and reduces {@code double} values using monoid.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param lift    mapping function
+     * @param monoid  monoid to use
+     * @return values reduced by provided monoid or identity if not values specified
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public double mapReduce(int threads, double[] values, DoubleUnaryOperator lift, DoubleMonoid monoid) throws InterruptedException {
+        final DoubleBinaryOperator operator = monoid.getOperator();
+        int workerCount = getWorkerCount(threads, values.length, lift);
+        int chunkCount = getChunkCount(workerCount, values.length);
+        double[] partials = new double[chunkCount];
+        runChunks(workerCount, values.length, lift, (chunk, from, to) -> {
+            double result = monoid.getIdentity();
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsDouble(result, lift.applyAsDouble(values[i]));
+            }
+            partials[chunk] = result;
+        });
+
+        double result = monoid.getIdentity();
+        for (double partial : partials) {
+            result = operator.applyAsDouble(result, partial);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether all {@code double} values satisfy predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether all values satisfy predicate or {@code true}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean all(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return !findAny(threads, values.length, predicate, i -> !predicate.test(values[i]));
+    }
+
+    /**
+     * Returns whether any of {@code double} values satisfies predicate.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to test
+     * @param predicate test predicate
+     * @return whether any value satisfies predicate or {@code false}, if no values are given
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public boolean any(int threads, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return findAny(threads, values.length, predicate, i -> predicate.test(values[i]));
+    }
+}
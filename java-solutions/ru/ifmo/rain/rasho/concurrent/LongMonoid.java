@@ -0,0 +1,42 @@
+package ru.ifmo.rain.rasho.concurrent;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Monoid over {@code long} values used by primitive reductions of {@link IterativeParallelism}.
+ *
+ * @author Rasho Elizaveta
+ */
+public class LongMonoid {
+    private final long identity;
+    private final LongBinaryOperator operator;
+
+    /**
+     * Creates a new monoid.
+     *
+     * @param identity identity element
+     * @param operator associative operator
+     */
+    public LongMonoid(final long identity, final LongBinaryOperator operator) {
+        this.identity = identity;
+        this.operator = operator;
+    }
+
+    /**
+     * Returns identity element of this monoid.
+     *
+     * @return identity element
+     */
+    public long getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Returns associative operator of this monoid.
+     *
+     * @return associative operator
+     */
+    public LongBinaryOperator getOperator() {
+        return operator;
+    }
+}
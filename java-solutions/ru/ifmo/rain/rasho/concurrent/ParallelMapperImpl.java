@@ -1,21 +1,45 @@
 package ru.ifmo.rain.rasho.concurrent;
 
-import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
-
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 
 /**
- * The implementation of the {@link ParallelMapper} interface.
+ * The implementation of the {@link AsyncParallelMapper} interface.
+ * <p>
+ * Tasks of every call are queued separately, and workers serve the calls in weighted round-robin order:
+ * a call of weight {@code w} runs up to {@code w} tasks before the next call is served.
+ * So a small call does not wait for all tasks of a large call submitted before it.
  *
  * @author Rasho Elizaveta
  */
 @SuppressWarnings("unused")
-public class ParallelMapperImpl implements ParallelMapper {
+public class ParallelMapperImpl implements AsyncParallelMapper {
+
+    private static final int BATCHES_PER_THREAD = 4;
+    private static final int DEFAULT_WEIGHT = 1;
+    private static final int SPIN_COUNT = 1 << 10;
 
-    private final Queue<Runnable> tasksToRun;
-    private final List<Thread> threads;
+    private final Deque<CallQueue> activeCalls;
+    private volatile int queuedTasks;
+    private final Set<Thread> threads;
+    private final BitSet workerSlots;
+    private final int minThreads;
+    private final int maxThreads;
+    private final long keepAliveNanos;
+    private int idleWorkers;
+    private boolean closed;
+    private final boolean chunked;
+    private volatile int lastBatchSize;
+    private volatile ParallelMapperMetrics metrics;
+    private ObjectName metricsName;
 
     /**
      * Creates a {@code ParallelMapperImpl} instance operating with of {@code threadCount}
@@ -24,108 +48,491 @@ public class ParallelMapperImpl implements ParallelMapper {
      * @param threadCount count of operable threads
      */
     public ParallelMapperImpl(int threadCount) {
-        if (threadCount < 1) {
-            throw new IllegalArgumentException("Incorrect number of threads: must be positive");
+        this(threadCount, false);
+    }
+
+    /**
+     * Creates a {@code ParallelMapperImpl} instance operating with of {@code threadCount}
+     * threads of type {@link Thread}.
+     * In the chunked mode arguments are submitted in batches, which are processed without
+     * per-element synchronization and complete the call once per batch.
+     *
+     * @param threadCount count of operable threads
+     * @param chunked     whether arguments should be submitted in batches
+     */
+    public ParallelMapperImpl(int threadCount, boolean chunked) {
+        this(threadCount, threadCount, 0, TimeUnit.NANOSECONDS, chunked);
+    }
+
+    /**
+     * Creates an elastic {@code ParallelMapperImpl} instance.
+     *
+     * @param minThreads count of threads, which are kept even when idle
+     * @param maxThreads maximal count of threads
+     * @param keepAlive  time, after which idle threads above {@code minThreads} are stopped
+     * @param unit       time unit of {@code keepAlive}
+     * @see #ParallelMapperImpl(int, int, long, TimeUnit, boolean)
+     */
+    public ParallelMapperImpl(int minThreads, int maxThreads, long keepAlive, TimeUnit unit) {
+        this(minThreads, maxThreads, keepAlive, unit, false);
+    }
+
+    /**
+     * Creates an elastic {@code ParallelMapperImpl} instance.
+     * A new thread is started, when tasks are submitted and no thread is idle, until there are
+     * {@code maxThreads} threads. Threads above {@code minThreads}, which have been idle for
+     * {@code keepAlive}, are stopped. An idle thread spins for a short time before it parks,
+     * so back-to-back calls are picked up without a wake-up.
+     *
+     * @param minThreads count of threads, which are kept even when idle
+     * @param maxThreads maximal count of threads
+     * @param keepAlive  time, after which idle threads above {@code minThreads} are stopped
+     * @param unit       time unit of {@code keepAlive}
+     * @param chunked    whether arguments should be submitted in batches
+     */
+    public ParallelMapperImpl(int minThreads, int maxThreads, long keepAlive, TimeUnit unit, boolean chunked) {
+        if (minThreads < 0 || maxThreads < 1 || minThreads > maxThreads) {
+            throw new IllegalArgumentException("Incorrect number of threads: must be 0 <= min <= max and max > 0");
+        }
+        if (keepAlive < 0) {
+            throw new IllegalArgumentException("Incorrect keep alive time: must be non-negative");
         }
-        tasksToRun = new LinkedList<>();
-        threads = new ArrayList<>();
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.keepAliveNanos = unit.toNanos(keepAlive);
+        this.chunked = chunked;
+        activeCalls = new ArrayDeque<>();
+        threads = new HashSet<>();
+        workerSlots = new BitSet(maxThreads);
 
+        synchronized (activeCalls) {
+            for (int i = 0; i < minThreads; i++) {
+                startWorker();
+            }
+        }
+    }
+
+    /**
+     * Starts a new worker. Must be called holding the {@code activeCalls} monitor.
+     */
+    private void startWorker() {
+        final int slot = workerSlots.nextClearBit(0);
+        workerSlots.set(slot);
         Thread thread = new Thread(
                 () -> {
                     try {
-                        while (!Thread.interrupted()) {
-                            runTask();
+                        Task task;
+                        while (!Thread.interrupted() && (task = takeTask(slot)) != null) {
+                            runTask(slot, task);
                         }
                     } catch (InterruptedException ignored) {
+                    } finally {
+                        synchronized (activeCalls) {
+                            if (threads.remove(Thread.currentThread())) {
+                                workerSlots.clear(slot);
+                            }
+                        }
                     }
                 }
         );
-        for (int i = 0; i < threadCount; i++) {
-            threads.add(new Thread(thread));
+        threads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Takes the next task or returns {@code null}, if the worker has been idle for too long and should stop.
+     */
+    private Task takeTask(final int slot) throws InterruptedException {
+        for (int i = 0; i < SPIN_COUNT && queuedTasks == 0; i++) {
+            Thread.onSpinWait();
+        }
+        synchronized (activeCalls) {
+            long deadline = System.nanoTime() + keepAliveNanos;
+            while (activeCalls.isEmpty()) {
+                boolean mayStop = threads.size() > minThreads;
+                long remaining = deadline - System.nanoTime();
+                if (closed || mayStop && remaining <= 0) {
+                    threads.remove(Thread.currentThread());
+                    workerSlots.clear(slot);
+                    return null;
+                }
+                idleWorkers++;
+                try {
+                    if (mayStop) {
+                        TimeUnit.NANOSECONDS.timedWait(activeCalls, remaining);
+                    } else {
+                        activeCalls.wait();
+                    }
+                } finally {
+                    idleWorkers--;
+                }
+            }
+            Task task = activeCalls.getFirst().poll(activeCalls);
+            queuedTasks--;
+            return task;
+        }
+    }
+
+    private void runTask(final int worker, final Task task) {
+        ParallelMapperMetrics currentMetrics = metrics;
+        if (currentMetrics == null || task.enqueueNanos == Task.NOT_TIMED) {
+            task.run();
+        } else {
+            long start = System.nanoTime();
+            currentMetrics.recordWait(start - task.enqueueNanos);
+            task.run();
+            currentMetrics.recordRun(worker, System.nanoTime() - start);
+        }
+    }
+
+    private static class Task {
+        private static final long NOT_TIMED = Long.MIN_VALUE;
+
+        private final MapFuture<?> owner;
+        private final Runnable action;
+        private long enqueueNanos = NOT_TIMED;
+
+        Task(final MapFuture<?> owner, final Runnable action) {
+            this.owner = owner;
+            this.action = action;
+        }
+
+        void run() {
+            if (!owner.isDone()) {
+                action.run();
+            }
         }
-        threads.forEach(Thread::start);
     }
 
-    private void runTask() throws InterruptedException {
-        Runnable task;
-        synchronized (tasksToRun) {
-            while (tasksToRun.isEmpty()) {
-                tasksToRun.wait();
+    private static class CallQueue {
+        private final MapFuture<?> owner;
+        private final Queue<Task> tasks;
+        private final int weight;
+        private int credit;
+
+        CallQueue(final MapFuture<?> owner, final List<Task> tasks, final int weight) {
+            this.owner = owner;
+            this.tasks = new ArrayDeque<>(tasks);
+            this.weight = weight;
+            credit = weight;
+        }
+
+        /**
+         * Polls the next task of this call, which is the first one in {@code activeCalls},
+         * and moves this call to the end of {@code activeCalls}, if its turn is over.
+         */
+        Task poll(final Deque<CallQueue> activeCalls) {
+            Task task = tasks.poll();
+            if (tasks.isEmpty()) {
+                activeCalls.removeFirst();
+            } else if (--credit == 0) {
+                credit = weight;
+                activeCalls.addLast(activeCalls.removeFirst());
             }
-            task = tasksToRun.poll();
+            return task;
         }
-        task.run();
     }
 
-    private class MapResult<R> {
-        private int nonNullTaskCount;
-        private List<R> results;
+    private class MapFuture<R> extends CompletableFuture<List<R>> {
+        private RuntimeException totalException;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                removeTasks(this);
+            }
+            return cancelled;
+        }
+
+        /**
+         * Fails the call on the first exception: the caller is woken up and the queued tasks of the call are dropped.
+         * Exceptions of the tasks that were already running are attached to the same exception as suppressed.
+         */
+        void addException(final RuntimeException e) {
+            ParallelMapperMetrics currentMetrics = metrics;
+            if (currentMetrics != null) {
+                currentMetrics.recordFailure();
+            }
+            final boolean first;
+            final RuntimeException exception;
+            synchronized (this) {
+                first = totalException == null;
+                if (first) {
+                    totalException = new RuntimeException("Errors occurred during elements mapping");
+                }
+                exception = totalException;
+            }
+            exception.addSuppressed(e);
+            if (first && completeExceptionally(exception)) {
+                removeTasks(this);
+            }
+        }
+
+        void finish(final List<R> results) {
+            complete(results);
+        }
+    }
+
+    /**
+     * Results of a call mapped element by element.
+     * Every element is written to its own array cell, the worker that counts the last element down
+     * completes the call, so workers of one call never contend on a lock.
+     */
+    private static class MapResult<R> {
+        private final Object[] results;
+        private final AtomicInteger remaining;
 
         MapResult(int resultSize) {
-            nonNullTaskCount = 0;
-            results = new ArrayList<>(Collections.nCopies(resultSize, null));
+            results = new Object[resultSize];
+            remaining = new AtomicInteger(resultSize);
+        }
+
+        boolean setByIndex(final int index, R element) {
+            results[index] = element;
+            return remaining.decrementAndGet() == 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<R> getResults() {
+            return (List<R>) Arrays.asList(results);
         }
+    }
+
+    private void addTasks(final MapFuture<?> owner, final List<Task> tasks, final int weight) {
+        if (metrics != null) {
+            long now = System.nanoTime();
+            tasks.forEach(task -> task.enqueueNanos = now);
+        }
+        CallQueue call = new CallQueue(owner, tasks, weight);
+        synchronized (activeCalls) {
+            if (closed) {
+                owner.completeExceptionally(new IllegalStateException("Mapper is closed"));
+                return;
+            }
+            activeCalls.addLast(call);
+            queuedTasks += tasks.size();
+            activeCalls.notifyAll();
 
-        synchronized void setByIndex(final int index, R element) {
-            results.set(index, element);
-            nonNullTaskCount++;
-            if (nonNullTaskCount == results.size()) {
-                notify();
+            int missingWorkers = Math.min(tasks.size(), maxThreads) - idleWorkers;
+            while (missingWorkers-- > 0 && threads.size() < maxThreads && !closed) {
+                startWorker();
             }
         }
+    }
 
-        synchronized List<R> getResults() throws InterruptedException {
-            while (nonNullTaskCount < results.size()) {
-                wait();
+    private void removeTasks(final MapFuture<?> owner) {
+        synchronized (activeCalls) {
+            Iterator<CallQueue> iterator = activeCalls.iterator();
+            while (iterator.hasNext()) {
+                CallQueue call = iterator.next();
+                if (call.owner == owner) {
+                    queuedTasks -= call.tasks.size();
+                    iterator.remove();
+                }
             }
-            return results;
         }
+    }
+
+    /**
+     * Returns the batch size chosen by the last {@link #map} call in the chunked mode.
+     *
+     * @return size of the last batch or {@code 0}, if nothing has been mapped in the chunked mode yet
+     */
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
 
+    private int getWorkerCount() {
+        synchronized (activeCalls) {
+            return threads.size();
+        }
     }
 
-    private void addTask(final Runnable task) {
-        synchronized (tasksToRun) {
-            tasksToRun.add(task);
-            tasksToRun.notify();
+    private int getQueueLength() {
+        synchronized (activeCalls) {
+            return queuedTasks;
         }
     }
 
-    @Override
-    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+    /**
+     * Enables collection of metrics. Until this method is called metrics are not collected.
+     *
+     * @return metrics of this mapper
+     */
+    public synchronized ParallelMapperMetricsMBean enableMetrics() {
+        if (metrics == null) {
+            metrics = new ParallelMapperMetrics(
+                    maxThreads, this::getWorkerCount, this::getQueueLength, this::getLastBatchSize
+            );
+        }
+        return metrics;
+    }
+
+    /**
+     * Enables collection of metrics and registers them in the platform MBean server.
+     * The MBean is unregistered when the mapper is closed.
+     *
+     * @param name value of the {@code name} key of the MBean object name
+     * @return object name of the registered MBean
+     * @throws JMException if the MBean cannot be registered
+     */
+    public synchronized ObjectName registerMetricsMBean(final String name) throws JMException {
+        ObjectName objectName = new ObjectName(
+                getClass().getPackageName() + ":type=ParallelMapper,name=" + ObjectName.quote(name)
+        );
+        ManagementFactory.getPlatformMBeanServer().registerMBean(enableMetrics(), objectName);
+        metricsName = objectName;
+        return objectName;
+    }
+
+    private int getBatchSize(final int size) {
+        return Math.max(1, size / (maxThreads * BATCHES_PER_THREAD));
+    }
+
+    private <T, R> List<Task> createChunkedTasks(Function<? super T, ? extends R> f, List<? extends T> args,
+                                                 MapFuture<R> future) {
+        final int batchSize = getBatchSize(args.size());
+        lastBatchSize = batchSize;
+
+        final Object[] results = new Object[args.size()];
+        @SuppressWarnings("unchecked")
+        final List<R> resultList = (List<R>) Arrays.asList(results);
+        final AtomicInteger remainingBatches = new AtomicInteger((args.size() + batchSize - 1) / batchSize);
+
+        List<Task> batches = new ArrayList<>();
+        for (int fromIndex = 0; fromIndex < args.size(); fromIndex += batchSize) {
+            final int from = fromIndex;
+            final int to = Math.min(args.size(), fromIndex + batchSize);
+            batches.add(new Task(future, () -> {
+                for (int i = from; i < to && !future.isDone(); i++) {
+                    try {
+                        results[i] = f.apply(args.get(i));
+                    } catch (RuntimeException e) {
+                        future.addException(e);
+                    }
+                }
+                if (remainingBatches.decrementAndGet() == 0) {
+                    future.finish(resultList);
+                }
+            }));
+        }
+        return batches;
+    }
+
+    private <T, R> List<Task> createTasks(Function<? super T, ? extends R> f, List<? extends T> args,
+                                          MapFuture<R> future) {
         MapResult<R> mapResult = new MapResult<>(args.size());
-        List<RuntimeException> runtimeExceptions = new ArrayList<>();
-        RuntimeException runtimeException = null;
 
+        List<Task> tasks = new ArrayList<>();
         for (int i = 0; i < args.size(); i++) {
             final int index = i;
-            addTask(
-                    () -> {
-                        R result = null;
-                        try {
-                            result = f.apply(args.get(index));
-                        } catch (RuntimeException e) {
-                            synchronized (runtimeExceptions) {
-                                runtimeExceptions.add(e);
-                            }
-                        }
-                        mapResult.setByIndex(index, result);
-                    }
-            );
+            tasks.add(new Task(future, () -> {
+                R result = null;
+                try {
+                    result = f.apply(args.get(index));
+                } catch (RuntimeException e) {
+                    future.addException(e);
+                }
+                if (mapResult.setByIndex(index, result)) {
+                    future.finish(mapResult.getResults());
+                }
+            }));
         }
+        return tasks;
+    }
 
-        if (runtimeExceptions.isEmpty()) {
-            return mapResult.getResults();
+    @Override
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args) {
+        return mapAsync(f, args, DEFAULT_WEIGHT);
+    }
+
+    /**
+     * Maps function {@code f} over specified {@code args} without blocking the calling thread.
+     * The call runs up to {@code weight} tasks in a row before tasks of other calls are served.
+     *
+     * @param f      mapping function
+     * @param args   values to map
+     * @param weight positive weight of the call
+     * @param <T>    type of values
+     * @param <R>    type of results
+     * @return future completed with the list of mapped values
+     * @see #mapAsync(Function, List)
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> f, List<? extends T> args,
+                                                      int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Incorrect weight: must be positive");
         }
+        MapFuture<R> future = new MapFuture<>();
+        if (args.isEmpty()) {
+            future.complete(new ArrayList<>());
+            return future;
+        }
+        addTasks(future, chunked ? createChunkedTasks(f, args, future) : createTasks(f, args, future), weight);
+        return future;
+    }
 
-        RuntimeException totalException = new RuntimeException("Errors occurred during elements mapping");
-        runtimeExceptions.forEach(totalException::addSuppressed);
-        throw totalException;
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+        return map(f, args, DEFAULT_WEIGHT);
     }
 
+    /**
+     * Maps function {@code f} over specified {@code args} with the specified weight of the call.
+     *
+     * @param f      mapping function
+     * @param args   values to map
+     * @param weight positive weight of the call
+     * @param <T>    type of values
+     * @param <R>    type of results
+     * @return list of mapped values
+     * @throws InterruptedException if calling thread was interrupted
+     * @see #mapAsync(Function, List, int)
+     */
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args, int weight)
+            throws InterruptedException {
+        CompletableFuture<List<R>> future = mapAsync(f, args, weight);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops all threads. Calls, which have tasks not started yet, are completed
+     * with {@link IllegalStateException}, as well as calls made after closing.
+     */
     @Override
     public void close() {
-        threads.forEach(Thread::interrupt);
-        threads.forEach(
+        synchronized (this) {
+            if (metricsName != null) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+                } catch (JMException ignored) {
+                }
+                metricsName = null;
+            }
+        }
+        List<Thread> workers;
+        List<MapFuture<?>> pending = new ArrayList<>();
+        synchronized (activeCalls) {
+            closed = true;
+            workers = new ArrayList<>(threads);
+            activeCalls.forEach(call -> pending.add(call.owner));
+            activeCalls.clear();
+            queuedTasks = 0;
+        }
+        pending.forEach(future -> future.completeExceptionally(new IllegalStateException("Mapper is closed")));
+        workers.forEach(Thread::interrupt);
+        workers.forEach(
                 thread -> {
                     try {
                         thread.join();
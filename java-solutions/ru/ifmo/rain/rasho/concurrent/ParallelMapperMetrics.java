@@ -0,0 +1,122 @@
+package ru.ifmo.rain.rasho.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics of a {@link ParallelMapperImpl}, exposed through JMX.
+ *
+ * @author Rasho Elizaveta
+ */
+public class ParallelMapperMetrics implements ParallelMapperMetricsMBean {
+
+    private final IntSupplier workerCount;
+    private final IntSupplier queueLength;
+    private final IntSupplier lastBatchSize;
+    private final long startNanos;
+    private final Histogram waitTime;
+    private final Histogram runTime;
+    private final AtomicLongArray workerBusyTime;
+    private final LongAdder failedElements;
+
+    ParallelMapperMetrics(final int workerSlots, final IntSupplier workerCount,
+                          final IntSupplier queueLength, final IntSupplier lastBatchSize) {
+        this.workerCount = workerCount;
+        this.queueLength = queueLength;
+        this.lastBatchSize = lastBatchSize;
+        startNanos = System.nanoTime();
+        waitTime = new Histogram();
+        runTime = new Histogram();
+        workerBusyTime = new AtomicLongArray(workerSlots);
+        failedElements = new LongAdder();
+    }
+
+    void recordWait(final long nanos) {
+        waitTime.record(nanos);
+    }
+
+    void recordRun(final int worker, final long nanos) {
+        runTime.record(nanos);
+        workerBusyTime.addAndGet(worker, nanos);
+    }
+
+    void recordFailure() {
+        failedElements.increment();
+    }
+
+    @Override
+    public int getQueueLength() {
+        return queueLength.getAsInt();
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return workerCount.getAsInt();
+    }
+
+    @Override
+    public long getCompletedTasks() {
+        return runTime.getCount();
+    }
+
+    @Override
+    public long getFailedElements() {
+        return failedElements.sum();
+    }
+
+    @Override
+    public int getLastBatchSize() {
+        return lastBatchSize.getAsInt();
+    }
+
+    @Override
+    public double getWaitTimeMean() {
+        return waitTime.getMean();
+    }
+
+    @Override
+    public long getWaitTime99thPercentile() {
+        return waitTime.getQuantile(0.99);
+    }
+
+    @Override
+    public long[] getWaitTimeHistogram() {
+        return waitTime.getBuckets();
+    }
+
+    @Override
+    public double getRunTimeMean() {
+        return runTime.getMean();
+    }
+
+    @Override
+    public long getRunTime99thPercentile() {
+        return runTime.getQuantile(0.99);
+    }
+
+    @Override
+    public long[] getRunTimeHistogram() {
+        return runTime.getBuckets();
+    }
+
+    @Override
+    public long[] getWorkerBusyTime() {
+        long[] result = new long[workerBusyTime.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = workerBusyTime.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public double[] getWorkerUtilisation() {
+        long elapsed = Math.max(1, System.nanoTime() - startNanos);
+        long[] busyTime = getWorkerBusyTime();
+        double[] result = new double[busyTime.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Math.min(1.0, (double) busyTime[i] / elapsed);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.ifmo.rain.rasho.concurrent;
+
+/**
+ * JMX management interface of {@link ParallelMapperImpl} metrics.
+ * Durations are measured in nanoseconds, histograms have power-of-two buckets:
+ * bucket {@code i} counts durations {@code d} with {@code 2^(i-1) <= d < 2^i}.
+ *
+ * @author Rasho Elizaveta
+ */
+public interface ParallelMapperMetricsMBean {
+    /**
+     * Returns number of tasks waiting in the queue.
+     *
+     * @return current queue length
+     */
+    int getQueueLength();
+
+    /**
+     * Returns number of running worker threads.
+     *
+     * @return number of workers
+     */
+    int getWorkerCount();
+
+    /**
+     * Returns number of tasks finished since metrics were enabled.
+     *
+     * @return number of finished tasks
+     */
+    long getCompletedTasks();
+
+    /**
+     * Returns number of exceptions thrown by mapped functions since metrics were enabled.
+     *
+     * @return number of exceptions
+     */
+    long getFailedElements();
+
+    /**
+     * Returns batch size chosen by the last chunked call.
+     *
+     * @return last batch size
+     */
+    int getLastBatchSize();
+
+    /**
+     * Returns mean time between enqueueing and start of a task.
+     *
+     * @return mean wait time
+     */
+    double getWaitTimeMean();
+
+    /**
+     * Returns upper bound of the 99th percentile of the wait time.
+     *
+     * @return 99th percentile of the wait time
+     */
+    long getWaitTime99thPercentile();
+
+    /**
+     * Returns histogram of time between enqueueing and start of a task.
+     *
+     * @return wait time histogram
+     */
+    long[] getWaitTimeHistogram();
+
+    /**
+     * Returns mean run time of a task.
+     *
+     * @return mean run time
+     */
+    double getRunTimeMean();
+
+    /**
+     * Returns upper bound of the 99th percentile of the run time.
+     *
+     * @return 99th percentile of the run time
+     */
+    long getRunTime99thPercentile();
+
+    /**
+     * Returns histogram of the task run time.
+     *
+     * @return run time histogram
+     */
+    long[] getRunTimeHistogram();
+
+    /**
+     * Returns time every worker slot has spent running tasks.
+     * A slot is reused by a new worker of an elastic mapper after the previous one stops.
+     *
+     * @return busy time per worker slot
+     */
+    long[] getWorkerBusyTime();
+
+    /**
+     * Returns fraction of time every worker slot has spent running tasks since metrics were enabled.
+     *
+     * @return utilisation per worker slot
+     */
+    double[] getWorkerUtilisation();
+}
@@ -0,0 +1,255 @@
+package ru.ifmo.rain.rasho.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * The work-stealing implementation of the {@link ParallelMapper} interface.
+ * <p>
+ * Every worker owns a deque of index ranges. A worker takes ranges from the tail of its own deque
+ * and splits them in halves, leaving the upper half available for other workers.
+ * Idle workers steal ranges from the head of other deques, so no lock is shared between all workers.
+ *
+ * @author Rasho Elizaveta
+ */
+@SuppressWarnings("unused")
+public class WorkStealingParallelMapper implements ParallelMapper {
+
+    private static final int RANGES_PER_WORKER = 8;
+
+    private final Worker[] workers;
+    private final AtomicInteger nextWorker;
+    private final Set<MapResult<?, ?>> activeCalls;
+    private volatile boolean closed;
+
+    /**
+     * Creates a {@code WorkStealingParallelMapper} instance operating with of {@code threadCount}
+     * threads of type {@link Thread}.
+     *
+     * @param threadCount count of operable threads
+     */
+    public WorkStealingParallelMapper(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Incorrect number of threads: must be positive");
+        }
+        nextWorker = new AtomicInteger();
+        activeCalls = ConcurrentHashMap.newKeySet();
+        workers = new Worker[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker();
+        }
+        Arrays.stream(workers).forEach(worker -> worker.thread.start());
+    }
+
+    private class Worker {
+        private final Thread thread;
+        private final ConcurrentLinkedDeque<Range<?, ?>> ranges;
+        private volatile boolean idle;
+
+        Worker() {
+            ranges = new ConcurrentLinkedDeque<>();
+            thread = new Thread(this::run);
+        }
+
+        private void run() {
+            while (!Thread.interrupted()) {
+                Range<?, ?> range = ranges.pollLast();
+                if (range == null) {
+                    range = steal();
+                }
+                if (range != null) {
+                    range.run(this);
+                } else {
+                    idle = true;
+                    // Re-check after publishing the idle flag: a submitter either sees the flag or we see its range.
+                    range = steal();
+                    if (range == null) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                    if (range != null) {
+                        range.run(this);
+                    }
+                }
+            }
+        }
+
+        private void wakeIdleWorkers() {
+            WorkStealingParallelMapper.this.wakeIdleWorkers();
+        }
+
+        private Range<?, ?> steal() {
+            int start = ThreadLocalRandom.current().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Range<?, ?> range = workers[(start + i) % workers.length].ranges.pollFirst();
+                if (range != null) {
+                    return range;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void wakeIdleWorkers() {
+        for (Worker worker : workers) {
+            if (worker.idle) {
+                LockSupport.unpark(worker.thread);
+            }
+        }
+    }
+
+    private static class MapResult<T, R> {
+        private final Function<? super T, ? extends R> function;
+        private final List<? extends T> args;
+        private final Object[] results;
+        private final int grain;
+        private final AtomicInteger remaining;
+        private final ConcurrentLinkedQueue<RuntimeException> runtimeExceptions;
+        private final AtomicReference<Throwable> failure;
+        private final Thread caller;
+
+        MapResult(final Function<? super T, ? extends R> function, final List<? extends T> args, final int grain) {
+            this.function = function;
+            this.args = args;
+            this.grain = grain;
+            results = new Object[args.size()];
+            remaining = new AtomicInteger(args.size());
+            runtimeExceptions = new ConcurrentLinkedQueue<>();
+            failure = new AtomicReference<>();
+            caller = Thread.currentThread();
+        }
+
+        void setRange(final int from, final int to) {
+            for (int i = from; i < to && failure.get() == null; i++) {
+                try {
+                    results[i] = function.apply(args.get(i));
+                } catch (RuntimeException e) {
+                    runtimeExceptions.add(e);
+                } catch (Error e) {
+                    fail(e);
+                }
+            }
+            if (remaining.addAndGet(from - to) == 0) {
+                LockSupport.unpark(caller);
+            }
+        }
+
+        /**
+         * Completes the call with the failure, elements not mapped yet are skipped.
+         */
+        void fail(final Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                LockSupport.unpark(caller);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<R> getResults() throws InterruptedException {
+            while (remaining.get() > 0 && failure.get() == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            Throwable e = failure.get();
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            if (remaining.get() > 0) {
+                throw (RuntimeException) e;
+            }
+            if (!runtimeExceptions.isEmpty()) {
+                RuntimeException totalException = new RuntimeException("Errors occurred during elements mapping");
+                runtimeExceptions.forEach(totalException::addSuppressed);
+                throw totalException;
+            }
+            return (List<R>) Arrays.asList(results);
+        }
+    }
+
+    private static class Range<T, R> {
+        private final MapResult<T, R> mapResult;
+        private final int from;
+        private int to;
+
+        Range(final MapResult<T, R> mapResult, final int from, final int to) {
+            this.mapResult = mapResult;
+            this.from = from;
+            this.to = to;
+        }
+
+        void run(final Worker worker) {
+            if (to - from > mapResult.grain) {
+                do {
+                    int middle = (from + to) >>> 1;
+                    worker.ranges.addLast(new Range<>(mapResult, middle, to));
+                    to = middle;
+                } while (to - from > mapResult.grain);
+                worker.wakeIdleWorkers();
+            }
+            mapResult.setRange(from, to);
+        }
+    }
+
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+        if (args.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int grain = Math.max(1, args.size() / (workers.length * RANGES_PER_WORKER));
+        MapResult<T, R> mapResult = new MapResult<>(f, args, grain);
+        activeCalls.add(mapResult);
+        if (closed) {
+            activeCalls.remove(mapResult);
+            throw new IllegalStateException("Mapper is closed");
+        }
+
+        int rangeCount = Math.min(workers.length, args.size());
+        int rangeSize = args.size() / rangeCount;
+        int addRanges = args.size() - rangeSize * rangeCount;
+        int first = Math.floorMod(nextWorker.getAndAdd(rangeCount), workers.length);
+        for (int i = 0, fromIndex = 0; i < rangeCount; i++) {
+            int toIndex = fromIndex + rangeSize + (addRanges > i ? 1 : 0);
+            workers[(first + i) % workers.length].ranges.addLast(new Range<>(mapResult, fromIndex, toIndex));
+            fromIndex = toIndex;
+        }
+        wakeIdleWorkers();
+
+        try {
+            return mapResult.getResults();
+        } finally {
+            activeCalls.remove(mapResult);
+        }
+    }
+
+    /**
+     * Stops all threads. Calls not mapped completely yet fail with {@link IllegalStateException},
+     * as well as calls made after closing.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Arrays.stream(workers).forEach(worker -> worker.thread.interrupt());
+        Arrays.stream(workers).forEach(
+                worker -> {
+                    try {
+                        worker.thread.join();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+        );
+        activeCalls.forEach(call -> call.fail(new IllegalStateException("Mapper is closed")));
+    }
+}
@@ -0,0 +1,137 @@
+package ru.ifmo.rain.rasho.concurrent.benchmarks;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal benchmark runner measuring throughput and allocation rate of an operation.
+ * <p>
+ * Allocation is computed from heap usage growth plus memory released by garbage collections,
+ * so allocations of short-lived worker threads are taken into account as well.
+ *
+ * @author Rasho Elizaveta
+ */
+class BenchmarkRunner {
+
+    /**
+     * Benchmarked operation. The returned value is consumed to prevent dead code elimination.
+     */
+    @FunctionalInterface
+    interface Operation {
+        Object run() throws InterruptedException;
+    }
+
+    /**
+     * Result of a single measurement.
+     */
+    static class Measurement {
+        final long operations;
+        final long nanos;
+        final long allocatedBytes;
+
+        Measurement(final long operations, final long nanos, final long allocatedBytes) {
+            this.operations = operations;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        double getOperationsPerSecond() {
+            return operations * 1e9 / nanos;
+        }
+
+        double getAllocationRate() {
+            return allocatedBytes * 1e9 / nanos / (1 << 20);
+        }
+
+        double getBytesPerOperation() {
+            return (double) allocatedBytes / operations;
+        }
+    }
+
+    static final String HEADER = String.format("%-12s %-12s %10s %8s %14s %14s %16s",
+            "Benchmark", "Path", "Size", "Threads", "ops/s", "alloc MB/s", "alloc B/op");
+
+    private static volatile Object sink;
+
+    private final long warmupNanos;
+    private final long measurementNanos;
+    private final AtomicLong collectedBytes;
+
+    BenchmarkRunner(final long warmupMillis, final long measurementMillis) {
+        this.warmupNanos = warmupMillis * 1_000_000;
+        this.measurementNanos = measurementMillis * 1_000_000;
+        collectedBytes = new AtomicLong();
+
+        NotificationListener listener = (notification, handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+                Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+                long collected = 0;
+                for (Map.Entry<String, MemoryUsage> entry : before.entrySet()) {
+                    collected += entry.getValue().getUsed() - after.get(entry.getKey()).getUsed();
+                }
+                collectedBytes.addAndGet(collected);
+            }
+        };
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+        }
+    }
+
+    private static long getHeapUsed() {
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        long used = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long run(final Operation operation, final long nanos) throws InterruptedException {
+        long operations = 0;
+        long start = System.nanoTime();
+        do {
+            sink = operation.run();
+            operations++;
+        } while (System.nanoTime() - start < nanos);
+        return operations;
+    }
+
+    Measurement measure(final Operation operation) throws InterruptedException {
+        run(operation, warmupNanos);
+        System.gc();
+
+        long collectedBefore = collectedBytes.get();
+        long usedBefore = getHeapUsed();
+        long start = System.nanoTime();
+        long operations = run(operation, measurementNanos);
+        long nanos = System.nanoTime() - start;
+        long usedAfter = getHeapUsed();
+        long allocated = usedAfter - usedBefore + collectedBytes.get() - collectedBefore;
+
+        return new Measurement(operations, nanos, Math.max(0, allocated));
+    }
+
+    static void print(final String benchmark, final String path, final int size, final int threads,
+                      final Measurement measurement) {
+        System.out.println(String.format("%-12s %-12s %10d %8d %14.2f %14.1f %16.1f",
+                benchmark, path, size, threads,
+                measurement.getOperationsPerSecond(),
+                measurement.getAllocationRate(),
+                measurement.getBytesPerOperation()));
+    }
+}
@@ -0,0 +1,159 @@
+package ru.ifmo.rain.rasho.concurrent.benchmarks;
+
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP.Monoid;
+import ru.ifmo.rain.rasho.concurrent.IterativeParallelism;
+import ru.ifmo.rain.rasho.concurrent.ParallelMapperImpl;
+import ru.ifmo.rain.rasho.concurrent.WorkStealingParallelMapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks of {@link IterativeParallelism} operations executed by raw threads, by {@link ParallelMapperImpl}
+ * and by {@link WorkStealingParallelMapper} compared with the sequential stream
+ * and {@link List#sort(Comparator)} baselines.
+ *
+ * @author Rasho Elizaveta
+ */
+public class ConcurrentBenchmarks {
+
+    private static final String MAIN_USAGE = "Usage: ConcurrentBenchmarks [maxSize [maxThreads [warmupMillis [measurementMillis]]]]";
+    private static final int MIN_SIZE = 1_000;
+    private static final int DEFAULT_MAX_SIZE = 100_000_000;
+    private static final int DEFAULT_WARMUP_MILLIS = 500;
+    private static final int DEFAULT_MEASUREMENT_MILLIS = 1000;
+
+    private static final int TOP_K = 100;
+
+    private static final Comparator<Integer> COMPARATOR = Integer::compare;
+    private static final Monoid<Integer> SUM = new Monoid<>(0, Integer::sum);
+
+    private interface ParallelOperation {
+        Object run(IterativeParallelism parallelism, int threads, List<Integer> values) throws InterruptedException;
+    }
+
+    private interface SequentialOperation {
+        Object run(List<Integer> values);
+    }
+
+    private static final Map<String, ParallelOperation> PARALLEL_OPERATIONS = new LinkedHashMap<>();
+    private static final Map<String, SequentialOperation> SEQUENTIAL_OPERATIONS = new LinkedHashMap<>();
+
+    static {
+        add("maximum",
+                (ip, threads, values) -> ip.maximum(threads, values, COMPARATOR),
+                values -> values.stream().max(COMPARATOR));
+        add("filter",
+                (ip, threads, values) -> ip.filter(threads, values, x -> x % 3 == 0),
+                values -> values.stream().filter(x -> x % 3 == 0).collect(Collectors.toList()));
+        add("map",
+                (ip, threads, values) -> ip.map(threads, values, x -> x + 1),
+                values -> values.stream().map(x -> x + 1).collect(Collectors.toList()));
+        add("join",
+                (ip, threads, values) -> ip.join(threads, values),
+                values -> values.stream().map(Object::toString).collect(Collectors.joining()));
+        add("reduce",
+                (ip, threads, values) -> ip.reduce(threads, values, SUM),
+                values -> values.stream().reduce(SUM.getIdentity(), SUM.getOperator()));
+        add("mapReduce",
+                (ip, threads, values) -> ip.mapReduce(threads, values, x -> x & 1, SUM),
+                values -> values.stream().map(x -> x & 1).reduce(SUM.getIdentity(), SUM.getOperator()));
+        add("topK",
+                (ip, threads, values) -> ip.topK(threads, values, TOP_K, COMPARATOR),
+                values -> sorted(values, COMPARATOR.reversed()).subList(0, Math.min(TOP_K, values.size())));
+        add("sort",
+                (ip, threads, values) -> ip.sort(threads, values, COMPARATOR),
+                values -> sorted(values, COMPARATOR));
+    }
+
+    private static List<Integer> sorted(final List<Integer> values, final Comparator<Integer> comparator) {
+        List<Integer> sorted = new ArrayList<>(values);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+    private static void add(final String name, final ParallelOperation parallel, final SequentialOperation sequential) {
+        PARALLEL_OPERATIONS.put(name, parallel);
+        SEQUENTIAL_OPERATIONS.put(name, sequential);
+    }
+
+    private static List<Integer> generate(final int size) {
+        Random random = new Random(size);
+        List<Integer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(random.nextInt());
+        }
+        return values;
+    }
+
+    private static List<Integer> getThreadCounts(final int maxThreads) {
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(maxThreads);
+        return threadCounts;
+    }
+
+    private static int getIntegerArgument(final String[] args, final int index, final int defaultValue) {
+        if (index < args.length) {
+            return Integer.parseInt(args[index]);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Runs the benchmarks and prints throughput and allocation rate of every configuration.
+     *
+     * @param args maximal list size, maximal number of threads, warmup and measurement time in milliseconds
+     * @throws InterruptedException if the benchmarking thread was interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int maxSize;
+        int maxThreads;
+        BenchmarkRunner runner;
+        try {
+            maxSize = getIntegerArgument(args, 0, DEFAULT_MAX_SIZE);
+            maxThreads = getIntegerArgument(args, 1, Runtime.getRuntime().availableProcessors());
+            runner = new BenchmarkRunner(
+                    getIntegerArgument(args, 2, DEFAULT_WARMUP_MILLIS),
+                    getIntegerArgument(args, 3, DEFAULT_MEASUREMENT_MILLIS)
+            );
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid input format: arguments must be integer numbers. " + MAIN_USAGE);
+            return;
+        }
+
+        System.out.println(BenchmarkRunner.HEADER);
+        for (long size = MIN_SIZE; size <= maxSize; size *= 10) {
+            List<Integer> values = generate((int) size);
+            for (Map.Entry<String, SequentialOperation> entry : SEQUENTIAL_OPERATIONS.entrySet()) {
+                SequentialOperation operation = entry.getValue();
+                BenchmarkRunner.print(entry.getKey(), "sequential", values.size(), 1,
+                        runner.measure(() -> operation.run(values)));
+            }
+            for (int threads : getThreadCounts(maxThreads)) {
+                IterativeParallelism raw = new IterativeParallelism();
+                try (ParallelMapperImpl mapper = new ParallelMapperImpl(threads);
+                     WorkStealingParallelMapper stealingMapper = new WorkStealingParallelMapper(threads)) {
+                    IterativeParallelism mapped = new IterativeParallelism(mapper);
+                    IterativeParallelism stealing = new IterativeParallelism(stealingMapper);
+                    for (Map.Entry<String, ParallelOperation> entry : PARALLEL_OPERATIONS.entrySet()) {
+                        ParallelOperation operation = entry.getValue();
+                        BenchmarkRunner.print(entry.getKey(), "threads", values.size(), threads,
+                                runner.measure(() -> operation.run(raw, threads, values)));
+                        BenchmarkRunner.print(entry.getKey(), "mapper", values.size(), threads,
+                                runner.measure(() -> operation.run(mapped, threads, values)));
+                        BenchmarkRunner.print(entry.getKey(), "stealing", values.size(), threads,
+                                runner.measure(() -> operation.run(stealing, threads, values)));
+                    }
+                }
+            }
+        }
+    }
+}
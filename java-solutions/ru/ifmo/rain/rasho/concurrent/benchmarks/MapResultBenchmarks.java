@@ -0,0 +1,69 @@
+package ru.ifmo.rain.rasho.concurrent.benchmarks;
+
+import ru.ifmo.rain.rasho.concurrent.ParallelMapperImpl;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Benchmark of {@link ParallelMapperImpl} mapping element by element, where every element completes
+ * separately and workers contend on per-call completion tracking.
+ * <p>
+ * The benchmark is compiled against the mapper of the tree it is run in, so results of two trees are compared
+ * by running it in both, see {@code scripts/runMapResultBenchmarks.sh}.
+ * Rows are labelled with the {@code path} argument.
+ *
+ * @author Rasho Elizaveta
+ */
+public class MapResultBenchmarks {
+
+    private static final String MAIN_USAGE = "Usage: MapResultBenchmarks path [size [maxThreads [warmupMillis [measurementMillis]]]]";
+    private static final int DEFAULT_SIZE = 1_000_000;
+    private static final int DEFAULT_MAX_THREADS = 32;
+    private static final int DEFAULT_WARMUP_MILLIS = 500;
+    private static final int DEFAULT_MEASUREMENT_MILLIS = 1000;
+
+    private static int getIntegerArgument(final String[] args, final int index, final int defaultValue) {
+        if (index < args.length) {
+            return Integer.parseInt(args[index]);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Runs the benchmarks and prints throughput and allocation rate of every number of threads.
+     *
+     * @param args label of the rows, number of elements, maximal number of threads,
+     *             warmup and measurement time in milliseconds
+     * @throws InterruptedException if the benchmarking thread was interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args == null || args.length == 0 || args[0] == null) {
+            System.err.println("Invalid input format: path must be specified. " + MAIN_USAGE);
+            return;
+        }
+        String path = args[0];
+        int size;
+        int maxThreads;
+        BenchmarkRunner runner;
+        try {
+            size = getIntegerArgument(args, 1, DEFAULT_SIZE);
+            maxThreads = getIntegerArgument(args, 2, DEFAULT_MAX_THREADS);
+            runner = new BenchmarkRunner(
+                    getIntegerArgument(args, 3, DEFAULT_WARMUP_MILLIS),
+                    getIntegerArgument(args, 4, DEFAULT_MEASUREMENT_MILLIS)
+            );
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid input format: arguments must be integer numbers. " + MAIN_USAGE);
+            return;
+        }
+
+        List<Integer> values = Collections.nCopies(size, 0);
+        System.out.println(BenchmarkRunner.HEADER);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            try (ParallelMapperImpl mapper = new ParallelMapperImpl(threads, false)) {
+                BenchmarkRunner.print("map", path, size, threads, runner.measure(() -> mapper.map(x -> x, values)));
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package ru.ifmo.rain.rasho.concurrent.distributed;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+import ru.ifmo.rain.rasho.concurrent.ParallelMapperImpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The implementation of the {@link ParallelMapper} interface mapping chunks of arguments
+ * by {@link MapperWorker} processes over sockets.
+ * <p>
+ * Arguments are split into contiguous chunks, every connection to a worker takes the next chunk from a shared queue,
+ * and results are gathered in the order of arguments. Only {@link RemoteFunction remote functions} are sent:
+ * stateless function classes by name, other functions serialized, see {@link Frames}. The worker processes must
+ * have the classes of functions and values on their class path.
+ * <p>
+ * Other functions, for example the ones capturing local state, cannot leave the current JVM
+ * and are mapped by local threads instead, so the mapper can be used wherever a {@link ParallelMapper} is expected.
+ * Chunks with values that cannot be sent are mapped by local threads as well.
+ * {@link ru.ifmo.rain.rasho.concurrent.IterativeParallelism} passes remote functions reducing whole chunks
+ * of values, so its reductions with serializable lift and operator run in the workers.
+ *
+ * @author Rasho Elizaveta
+ */
+@SuppressWarnings("unused")
+public class DistributedParallelMapper implements ParallelMapper {
+
+    private static final int CHUNKS_PER_CONNECTION = 4;
+
+    private final BlockingQueue<Chunk> queue;
+    private final List<Connection> connections;
+    private final List<Process> processes;
+    private final AtomicInteger aliveConnections;
+    private ParallelMapperImpl localMapper;
+    private volatile boolean closed;
+
+    /**
+     * Creates a {@code DistributedParallelMapper} instance mapping by already running workers.
+     *
+     * @param workers     addresses of {@link MapperWorker} processes
+     * @param connections number of connections to every worker, that is number of chunks it maps concurrently
+     * @throws IOException if a connection to a worker could not be opened
+     */
+    public DistributedParallelMapper(List<InetSocketAddress> workers, int connections) throws IOException {
+        this(connections);
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("Incorrect number of workers: must be positive");
+        }
+        try {
+            for (InetSocketAddress worker : workers) {
+                connect(worker, connections);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a {@code DistributedParallelMapper} instance mapping by {@code processes} worker processes
+     * forked on the local host with the class path of the current JVM.
+     * Worker processes are destroyed on {@link #close()} and exit when the current JVM exits.
+     *
+     * @param processes   number of worker processes
+     * @param connections number of connections to every worker, that is number of chunks it maps concurrently
+     * @throws IOException if a worker process could not be started or connected to
+     */
+    public DistributedParallelMapper(int processes, int connections) throws IOException {
+        this(connections);
+        if (processes < 1) {
+            throw new IllegalArgumentException("Incorrect number of processes: must be positive");
+        }
+        try {
+            for (int i = 0; i < processes; i++) {
+                Process process = fork();
+                this.processes.add(process);
+                connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), readPort(process)), connections);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private DistributedParallelMapper(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("Incorrect number of connections: must be positive");
+        }
+        queue = new LinkedBlockingQueue<>();
+        this.connections = new ArrayList<>();
+        processes = new ArrayList<>();
+        aliveConnections = new AtomicInteger();
+    }
+
+    private static Process fork() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        String allowedClasses = System.getProperty(Frames.ALLOWED_CLASSES_PROPERTY);
+        if (allowedClasses != null) {
+            command.add("-D" + Frames.ALLOWED_CLASSES_PROPERTY + "=" + allowedClasses);
+        }
+        command.addAll(List.of("-cp", getClassPath(), MapperWorker.class.getName(), "0", MapperWorker.FORK_OPTION));
+        return new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * Returns the class path of the current JVM with the location of this class,
+     * which differs when the class is loaded by a custom class loader, for example by a test launcher.
+     */
+    private static String getClassPath() {
+        String classPath = System.getProperty("java.class.path");
+        CodeSource source = MapperWorker.class.getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return classPath;
+        }
+        try {
+            String location = Paths.get(source.getLocation().toURI()).toString();
+            return classPath.isEmpty() ? location : location + File.pathSeparator + classPath;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return classPath;
+        }
+    }
+
+    private static int readPort(final Process process) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (line == null) {
+            throw new IOException("Worker process exited before reporting its port");
+        }
+        try {
+            return Integer.parseInt(line.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected worker output: " + line, e);
+        }
+    }
+
+    private void connect(final InetSocketAddress address, final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Connection connection = new Connection(new Socket(address.getAddress(), address.getPort()));
+            connections.add(connection);
+            aliveConnections.incrementAndGet();
+            connection.thread.start();
+        }
+    }
+
+    private static class Chunk {
+        private final Function<Object, ?> local;
+        private final byte[] function;
+        private final List<?> values;
+        private final CompletableFuture<List<Object>> results;
+        private volatile List<RuntimeException> errors;
+
+        Chunk(final Function<Object, ?> local, final byte[] function, final List<?> values) {
+            this.local = local;
+            this.function = function;
+            this.values = values;
+            results = new CompletableFuture<>();
+        }
+
+        void mapLocally() {
+            List<Object> mapped = new ArrayList<>(values.size());
+            List<RuntimeException> mappingErrors = new ArrayList<>();
+            for (Object value : values) {
+                try {
+                    mapped.add(local.apply(value));
+                } catch (RuntimeException e) {
+                    mappingErrors.add(e);
+                }
+            }
+            if (mappingErrors.isEmpty()) {
+                results.complete(mapped);
+            } else {
+                fail(mappingErrors);
+            }
+        }
+
+        void fail(final List<RuntimeException> errors) {
+            this.errors = errors;
+            results.complete(null);
+        }
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private final Thread thread;
+        private int nextId;
+
+        Connection(final Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            thread = new Thread(this::run, "DistributedParallelMapper-" + socket.getRemoteSocketAddress());
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            Chunk chunk = null;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                while (!Thread.interrupted()) {
+                    chunk = queue.take();
+                    if (!chunk.results.isDone()) {
+                        process(chunk, in, out);
+                    }
+                    chunk = null;
+                }
+            } catch (InterruptedException ignored) {
+            } catch (IOException e) {
+                if (chunk != null && !closed) {
+                    queue.add(chunk);
+                    chunk = null;
+                }
+            } finally {
+                closeSocket();
+                if (chunk != null) {
+                    chunk.fail(List.of(new IllegalStateException("Mapper is closed")));
+                }
+                if (aliveConnections.decrementAndGet() == 0) {
+                    failQueued();
+                }
+            }
+        }
+
+        private void process(final Chunk chunk, final DataInputStream in, final DataOutputStream out) throws IOException {
+            byte[] request;
+            try {
+                request = Frames.encodeValues(chunk.values);
+            } catch (IOException e) {
+                chunk.mapLocally();
+                return;
+            }
+            int id = nextId++;
+            out.writeInt(id);
+            out.write(chunk.function);
+            Frames.writeBlock(out, request);
+            out.flush();
+
+            if (in.readInt() != id) {
+                throw new IOException("Unexpected response identifier");
+            }
+            byte status = in.readByte();
+            if (status != Frames.STATUS_OK && status != Frames.STATUS_ERROR) {
+                throw new IOException("Unknown response status: " + status);
+            }
+            byte[] response = Frames.readBlock(in);
+            try {
+                if (status == Frames.STATUS_OK) {
+                    List<Object> results = Frames.decodeValues(response);
+                    if (results.size() != chunk.values.size()) {
+                        throw new IOException("Unexpected number of results: " + results.size());
+                    }
+                    chunk.results.complete(results);
+                } else {
+                    List<RuntimeException> errors = new ArrayList<>();
+                    for (String error : Frames.decodeErrors(response)) {
+                        errors.add(new RuntimeException(error));
+                    }
+                    chunk.fail(errors);
+                }
+            } catch (IOException e) {
+                chunk.fail(List.of(new UncheckedIOException("Cannot read results of the worker", e)));
+            }
+        }
+
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void failQueued() {
+        Chunk chunk;
+        while ((chunk = queue.poll()) != null) {
+            chunk.fail(List.of(new UncheckedIOException(new IOException("No worker connections left"))));
+        }
+    }
+
+    private synchronized ParallelMapperImpl getLocalMapper() {
+        if (localMapper == null) {
+            localMapper = new ParallelMapperImpl(Runtime.getRuntime().availableProcessors());
+        }
+        return localMapper;
+    }
+
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
+        if (args.isEmpty()) {
+            return new ArrayList<>();
+        }
+        byte[] function = Frames.describeFunction(f);
+        if (function == null) {
+            return getLocalMapper().map(f, args);
+        }
+
+        @SuppressWarnings("unchecked")
+        Function<Object, ?> local = (Function<Object, ?>) f;
+        int chunkCount = Math.min(args.size(), connections.size() * CHUNKS_PER_CONNECTION);
+        int chunkSize = args.size() / chunkCount;
+        int addChunks = args.size() - chunkSize * chunkCount;
+        List<Chunk> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0, fromIndex = 0; i < chunkCount; i++) {
+            int toIndex = fromIndex + chunkSize + (addChunks > i ? 1 : 0);
+            chunks.add(new Chunk(local, function, args.subList(fromIndex, toIndex)));
+            fromIndex = toIndex;
+        }
+        queue.addAll(chunks);
+        if (aliveConnections.get() == 0) {
+            failQueued();
+        }
+
+        List<Object> results = new ArrayList<>(args.size());
+        List<RuntimeException> errors = new ArrayList<>();
+        try {
+            for (Chunk chunk : chunks) {
+                List<Object> chunkResults = chunk.results.get();
+                if (chunk.errors == null) {
+                    results.addAll(chunkResults);
+                } else {
+                    errors.addAll(chunk.errors);
+                }
+            }
+        } catch (InterruptedException e) {
+            queue.removeAll(chunks);
+            chunks.forEach(chunk -> chunk.results.cancel(false));
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Chunk results are never completed exceptionally", e);
+        }
+
+        if (!errors.isEmpty()) {
+            RuntimeException totalException = new RuntimeException("Errors occurred during elements mapping");
+            errors.forEach(totalException::addSuppressed);
+            throw totalException;
+        }
+        @SuppressWarnings("unchecked")
+        List<R> mapped = (List<R>) results;
+        return mapped;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        connections.forEach(connection -> {
+            connection.thread.interrupt();
+            connection.closeSocket();
+        });
+        connections.forEach(connection -> {
+            try {
+                connection.thread.join();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        processes.forEach(Process::destroy);
+        synchronized (this) {
+            if (localMapper != null) {
+                localMapper.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package ru.ifmo.rain.rasho.concurrent.distributed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Binary frames exchanged by {@link DistributedParallelMapper} and {@link MapperWorker}.
+ * <p>
+ * Request frame: {@code int id}, function, values block.
+ * Function is either {@code FUNCTION_BY_NAME} followed by the class name,
+ * or {@code FUNCTION_SERIALIZED} followed by the length and bytes of the serialized function.
+ * <p>
+ * Response frame: {@code int id}, {@code byte status}, then values block for {@code STATUS_OK},
+ * or errors block for {@code STATUS_ERROR}.
+ * <p>
+ * A block is {@code int length} and {@code length} bytes, so a value that cannot be decoded fails its chunk
+ * and keeps the connection usable. Values block is {@code int count} and {@code count} values,
+ * errors block is {@code int count} and {@code count} error descriptions.
+ * Values of common immutable types are written in place, lists are written element by element
+ * and read as {@link ArrayList}, other values are written by Java serialization.
+ * <p>
+ * Only {@link RemoteFunction} classes are instantiated by name, and every serialized object is read through
+ * {@link #FILTER}: it admits common {@code java.base} value types, enums, serializable lambdas and remote functions,
+ * classes matching the {@value #ALLOWED_CLASSES_PROPERTY} filter pattern, and classes that are not serializable,
+ * since those can only be referred to, not instantiated. Hidden classes cannot be named in a stream,
+ * they are checked only as classes of lambdas resolved from admitted serialized lambdas.
+ *
+ * @author Rasho Elizaveta
+ */
+class Frames {
+    static final byte FUNCTION_BY_NAME = 0;
+    static final byte FUNCTION_SERIALIZED = 1;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte STRING = 5;
+    private static final byte OBJECT = 6;
+    private static final byte LIST = 7;
+
+    /**
+     * Maximal length of a string surely fitting into {@link DataOutputStream#writeUTF(String)}.
+     */
+    static final int MAX_UTF_LENGTH = 0xFFFF / 3;
+
+    /**
+     * System property with an {@link ObjectInputFilter.Config#createFilter(String) object input filter pattern}
+     * of additional classes allowed to be deserialized, for example {@code "com.example.*"}.
+     */
+    static final String ALLOWED_CLASSES_PROPERTY = "ru.ifmo.rain.rasho.concurrent.distributed.allowedClasses";
+
+    private static final int MAX_SERIALIZED_LENGTH = 1 << 26;
+    private static final int MAX_BLOCK_LENGTH = 1 << 28;
+    private static final int MAX_INITIAL_CAPACITY = 1 << 10;
+    private static final int MAX_DEPTH = 64;
+    private static final int MAX_REFERENCES = 1 << 20;
+
+    private static final Set<Class<?>> ALLOWED_CLASSES = Set.of(
+            Number.class, Integer.class, Long.class, Double.class, Float.class, Short.class, Byte.class,
+            Character.class, Boolean.class, String.class, BigInteger.class, BigDecimal.class,
+            ArrayList.class, LinkedList.class, ArrayDeque.class, HashMap.class, LinkedHashMap.class,
+            HashSet.class, LinkedHashSet.class, TreeMap.class, TreeSet.class, SerializedLambda.class);
+    private static final String COLLECTION_PROXY = "java.util.CollSer";
+
+    private static final ObjectInputFilter ALLOWED_BY_PROPERTY = createPropertyFilter();
+    private static final ObjectInputFilter FILTER = Frames::checkClass;
+
+    private Frames() {
+    }
+
+    /**
+     * Returns function frame part or {@code null} if the function cannot leave the current JVM.
+     * Stateless public classes with a public no-argument constructor are sent by name,
+     * other {@link RemoteFunction remote functions} are serialized.
+     */
+    static byte[] describeFunction(final Function<?, ?> function) {
+        if (!(function instanceof RemoteFunction)) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (isLoadableByName(function.getClass())) {
+                out.writeByte(FUNCTION_BY_NAME);
+                out.writeUTF(function.getClass().getName());
+            } else {
+                byte[] serialized = serialize(function);
+                out.writeByte(FUNCTION_SERIALIZED);
+                out.writeInt(serialized.length);
+                out.write(serialized);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean isLoadableByName(final Class<?> token) {
+        if (token.isSynthetic() || token.isHidden() || token.isAnonymousClass() || token.isLocalClass()
+                || !Modifier.isPublic(token.getModifiers())
+                || token.isMemberClass() && !Modifier.isStatic(token.getModifiers())) {
+            return false;
+        }
+        for (Class<?> current = token; current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    return false;
+                }
+            }
+        }
+        try {
+            token.getConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads function part of a frame.
+     * If the function cannot be loaded, it is replaced with a function failing on every value,
+     * so the rest of the frame is still read and the failure is reported back for every value.
+     * A class loaded by name is checked to be a {@link RemoteFunction} before it is initialized.
+     */
+    @SuppressWarnings("unchecked")
+    static Function<Object, Object> readFunction(final DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        String name = null;
+        byte[] serialized = null;
+        if (kind == FUNCTION_BY_NAME) {
+            name = in.readUTF();
+        } else if (kind == FUNCTION_SERIALIZED) {
+            serialized = readSerialized(in);
+        } else {
+            throw new IOException("Unknown function kind: " + kind);
+        }
+
+        try {
+            Object function;
+            if (name != null) {
+                Class<?> token = Class.forName(name, false, Frames.class.getClassLoader());
+                if (!RemoteFunction.class.isAssignableFrom(token)) {
+                    throw new IOException("Not a remote function: " + name);
+                }
+                function = token.getConstructor().newInstance();
+            } else {
+                function = deserialize(serialized);
+            }
+            if (!(function instanceof RemoteFunction)) {
+                throw new IOException("Not a remote function: " + function.getClass().getName());
+            }
+            return (Function<Object, Object>) function;
+        } catch (ReflectiveOperationException | IOException e) {
+            final String message = "Cannot load function: " + e.getMessage();
+            return value -> {
+                throw new IllegalStateException(message);
+            };
+        }
+    }
+
+    static String describeError(final Exception e) {
+        String description = e.getClass().getName() + ": " + e.getMessage();
+        return description.length() <= MAX_UTF_LENGTH ? description : description.substring(0, MAX_UTF_LENGTH);
+    }
+
+    static void writeBlock(final DataOutputStream out, final byte[] block) throws IOException {
+        out.writeInt(block.length);
+        out.write(block);
+    }
+
+    static byte[] readBlock(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_BLOCK_LENGTH) {
+            throw new IOException("Incorrect block length: " + length);
+        }
+        byte[] block = new byte[length];
+        in.readFully(block);
+        return block;
+    }
+
+    static byte[] encodeValues(final List<?> values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeValues(out, values);
+        }
+        if (bytes.size() > MAX_BLOCK_LENGTH) {
+            throw new IOException("Values take too many bytes: " + bytes.size());
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Object> decodeValues(final byte[] block) throws IOException {
+        return readValues(new DataInputStream(new ByteArrayInputStream(block)), 0);
+    }
+
+    static byte[] encodeErrors(final List<String> errors) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(errors.size());
+            for (String error : errors) {
+                out.writeUTF(error);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<String> decodeErrors(final byte[] block) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+        int count = readCount(in);
+        List<String> errors = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            errors.add(in.readUTF());
+        }
+        return errors;
+    }
+
+    private static int readCount(final DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative number of values: " + count);
+        }
+        return count;
+    }
+
+    private static void writeValues(final DataOutputStream out, final List<?> values) throws IOException {
+        out.writeInt(values.size());
+        for (Object value : values) {
+            writeValue(out, value);
+        }
+    }
+
+    private static List<Object> readValues(final DataInputStream in, final int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Lists are nested too deep");
+        }
+        int count = readCount(in);
+        List<Object> values = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            values.add(readValue(in, depth));
+        }
+        return values;
+    }
+
+    private static void writeValue(final DataOutputStream out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String && ((String) value).length() <= MAX_UTF_LENGTH) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof List) {
+            out.writeByte(LIST);
+            writeValues(out, (List<?>) value);
+        } else {
+            byte[] serialized = serialize(value);
+            out.writeByte(OBJECT);
+            out.writeInt(serialized.length);
+            out.write(serialized);
+        }
+    }
+
+    private static Object readValue(final DataInputStream in, final int depth) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case STRING:
+                return in.readUTF();
+            case LIST:
+                return readValues(in, depth + 1);
+            case OBJECT:
+                return deserialize(readSerialized(in));
+            default:
+                throw new IOException("Unknown value type: " + type);
+        }
+    }
+
+    private static byte[] serialize(final Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readSerialized(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_SERIALIZED_LENGTH) {
+            throw new IOException("Incorrect length of serialized object: " + length);
+        }
+        byte[] serialized = new byte[length];
+        in.readFully(serialized);
+        return serialized;
+    }
+
+    private static Object deserialize(final byte[] serialized) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            in.setObjectInputFilter(FILTER);
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class of serialized value: " + e.getMessage(), e);
+        }
+    }
+
+    private static ObjectInputFilter createPropertyFilter() {
+        String pattern = System.getProperty(ALLOWED_CLASSES_PROPERTY);
+        return pattern == null || pattern.isBlank() ? null : ObjectInputFilter.Config.createFilter(pattern);
+    }
+
+    private static ObjectInputFilter.Status checkClass(final ObjectInputFilter.FilterInfo info) {
+        if (info.depth() > MAX_DEPTH || info.references() > MAX_REFERENCES
+                || info.arrayLength() > MAX_SERIALIZED_LENGTH) {
+            return ObjectInputFilter.Status.REJECTED;
+        }
+        Class<?> token = info.serialClass();
+        if (token == null) {
+            return ObjectInputFilter.Status.ALLOWED;
+        }
+        while (token.isArray()) {
+            token = token.getComponentType();
+        }
+        if (token.isPrimitive() || token == Object.class || !Serializable.class.isAssignableFrom(token)
+                || ALLOWED_CLASSES.contains(token) || COLLECTION_PROXY.equals(token.getName())
+                || token.isEnum() || token.isHidden() || RemoteFunction.class.isAssignableFrom(token)) {
+            return ObjectInputFilter.Status.ALLOWED;
+        }
+        if (ALLOWED_BY_PROPERTY != null && ALLOWED_BY_PROPERTY.checkInput(info) == ObjectInputFilter.Status.ALLOWED) {
+            return ObjectInputFilter.Status.ALLOWED;
+        }
+        return ObjectInputFilter.Status.REJECTED;
+    }
+}
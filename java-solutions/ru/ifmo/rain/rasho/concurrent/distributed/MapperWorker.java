@@ -0,0 +1,147 @@
+package ru.ifmo.rain.rasho.concurrent.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Worker process of {@link DistributedParallelMapper}.
+ * <p>
+ * Listens on a port and maps chunks received by every connection in a separate thread.
+ * The bound port is printed to the standard output as the first line.
+ * <p>
+ * The worker listens on the loopback interface unless another address is specified,
+ * forked workers always do. Only {@link RemoteFunction remote functions} are run, see {@link Frames}.
+ *
+ * @author Rasho Elizaveta
+ */
+public class MapperWorker {
+
+    /**
+     * Option making a forked worker exit when its standard input is closed, that is when the parent process ends.
+     */
+    static final String FORK_OPTION = "--fork";
+
+    private static final String MAIN_USAGE = "Usage: MapperWorker <port> [<bind address> | " + FORK_OPTION + "]";
+    private static final int BACKLOG = 50;
+
+    private static void serve(final Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            while (true) {
+                int id;
+                try {
+                    id = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                Function<Object, Object> function = Frames.readFunction(in);
+                byte[] request = Frames.readBlock(in);
+
+                List<Object> results = new ArrayList<>();
+                List<String> errors = new ArrayList<>();
+                try {
+                    for (Object value : Frames.decodeValues(request)) {
+                        try {
+                            results.add(function.apply(value));
+                        } catch (RuntimeException e) {
+                            errors.add(Frames.describeError(e));
+                        }
+                    }
+                } catch (IOException e) {
+                    errors.add(Frames.describeError(e));
+                }
+
+                byte status = Frames.STATUS_OK;
+                byte[] response = null;
+                if (errors.isEmpty()) {
+                    try {
+                        response = Frames.encodeValues(results);
+                    } catch (IOException e) {
+                        errors.add(Frames.describeError(e));
+                    }
+                }
+                if (!errors.isEmpty()) {
+                    status = Frames.STATUS_ERROR;
+                    response = Frames.encodeErrors(errors);
+                }
+                out.writeInt(id);
+                out.writeByte(status);
+                Frames.writeBlock(out, response);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Connection closed: " + e.getMessage());
+        }
+    }
+
+    private static void exitWithParent() {
+        Thread watcher = new Thread(() -> {
+            try {
+                while (System.in.read() != -1) {
+                    // Parent never writes, only the end of the stream matters.
+                }
+            } catch (IOException ignored) {
+            }
+            System.exit(0);
+        });
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Starts a worker listening on the specified port. Port {@code 0} means any free port.
+     *
+     * @param args port and optional address to listen on or {@value FORK_OPTION} option
+     */
+    public static void main(String[] args) {
+        if (args == null || args.length < 1 || args.length > 2 || args[0] == null) {
+            System.err.println("Expected port and optional option. " + MAIN_USAGE);
+            return;
+        }
+        int port;
+        try {
+            port = Integer.parseInt(args[0]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid input format: port must be an integer number. " + MAIN_USAGE);
+            return;
+        }
+        InetAddress address = InetAddress.getLoopbackAddress();
+        if (args.length == 2) {
+            if (FORK_OPTION.equals(args[1])) {
+                exitWithParent();
+            } else {
+                try {
+                    address = InetAddress.getByName(args[1]);
+                } catch (IOException e) {
+                    System.err.println("Unknown address " + args[1] + ". " + MAIN_USAGE);
+                    return;
+                }
+            }
+        }
+
+        try (ServerSocket server = new ServerSocket(port, BACKLOG, address)) {
+            System.out.println(server.getLocalPort());
+            System.out.flush();
+            while (!Thread.interrupted()) {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> serve(socket));
+                connection.setDaemon(true);
+                connection.start();
+            }
+        } catch (IOException e) {
+            System.err.println("Worker stopped: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.ifmo.rain.rasho.concurrent.distributed;
+
+import java.io.Serializable;
+import java.util.function.Function;
+
+/**
+ * Marker of functions allowed to be mapped by {@link MapperWorker} processes.
+ * <p>
+ * A worker instantiates or deserializes only classes implementing this interface, so a peer cannot make it
+ * run an arbitrary class of its class path. Lambdas become remote functions by the cast to this interface.
+ *
+ * @param <T> type of function argument
+ * @param <R> type of function result
+ * @author Rasho Elizaveta
+ */
+@FunctionalInterface
+public interface RemoteFunction<T, R> extends Function<T, R>, Serializable {
+}
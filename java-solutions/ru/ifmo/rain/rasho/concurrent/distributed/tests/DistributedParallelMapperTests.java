@@ -0,0 +1,201 @@
+package ru.ifmo.rain.rasho.concurrent.distributed.tests;
+
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP.Monoid;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.rasho.concurrent.IterativeParallelism;
+import ru.ifmo.rain.rasho.concurrent.distributed.DistributedParallelMapper;
+import ru.ifmo.rain.rasho.concurrent.distributed.MapperWorker;
+import ru.ifmo.rain.rasho.concurrent.distributed.RemoteFunction;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Distributed mapper tests with forked workers")
+class DistributedParallelMapperTests {
+
+    private static final int PROCESSES = 2;
+    private static final int CONNECTIONS = 2;
+    private static final int SIZE = 10_000;
+    private static final long PARENT = ProcessHandle.current().pid();
+
+    private static final List<Integer> VALUES = IntStream.range(0, SIZE).boxed().collect(Collectors.toList());
+
+    private static DistributedParallelMapper mapper;
+
+    public static class Square implements RemoteFunction<Integer, Long> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Long apply(final Integer value) {
+            return (long) value * value;
+        }
+    }
+
+    public static class Pid implements RemoteFunction<Integer, Long> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Long apply(final Integer value) {
+            return ProcessHandle.current().pid();
+        }
+    }
+
+    public static class Fail implements RemoteFunction<Integer, Integer> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Integer apply(final Integer value) {
+            if (value % 100 == 7) {
+                throw new IllegalArgumentException("Bad value " + value);
+            }
+            return value;
+        }
+    }
+
+    @BeforeAll
+    static void init() throws IOException {
+        mapper = new DistributedParallelMapper(PROCESSES, CONNECTIONS);
+    }
+
+    @AfterAll
+    static void close() {
+        mapper.close();
+    }
+
+    private static BinaryOperator<Long> sum() {
+        return (BinaryOperator<Long> & Serializable) Long::sum;
+    }
+
+    @DisplayName("Functions sent by name are mapped by worker processes")
+    @Test
+    void testByName() throws InterruptedException {
+        assertEquals(VALUES.stream().map(value -> (long) value * value).collect(Collectors.toList()),
+                mapper.map(new Square(), VALUES));
+        List<Long> pids = mapper.map(new Pid(), VALUES);
+        assertTrue(pids.stream().noneMatch(pid -> pid == PARENT), "Values mapped by the calling process");
+        assertEquals(PROCESSES, pids.stream().distinct().count());
+    }
+
+    @DisplayName("Serialized lambdas capturing values are mapped by worker processes")
+    @Test
+    void testSerialized() throws InterruptedException {
+        int offset = 5;
+        RemoteFunction<Integer, String> function = value -> value + offset + "@" + ProcessHandle.current().pid();
+        List<String> results = mapper.map(function, VALUES);
+        for (int i = 0; i < SIZE; i++) {
+            assertTrue(results.get(i).startsWith(i + offset + "@"));
+            assertFalse(results.get(i).endsWith("@" + PARENT), "Value mapped by the calling process");
+        }
+    }
+
+    @DisplayName("Mapping errors are gathered from worker processes")
+    @Test
+    void testErrors() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> mapper.map(new Fail(), VALUES));
+        assertEquals(SIZE / 100, e.getSuppressed().length);
+    }
+
+    @DisplayName("Map-reduce of IterativeParallelism runs in worker processes")
+    @Test
+    void testMapReduce() throws InterruptedException {
+        IterativeParallelism parallelism = new IterativeParallelism(mapper);
+        RemoteFunction<Integer, Long> square = value -> (long) value * value;
+        assertEquals(VALUES.stream().mapToLong(value -> (long) value * value).sum(),
+                parallelism.mapReduce(3, VALUES, square, new Monoid<>(0L, sum())));
+
+        long parent = PARENT;
+        RemoteFunction<Integer, Long> local = value -> ProcessHandle.current().pid() == parent ? 1L : 0L;
+        assertEquals(0L, parallelism.mapReduce(3, VALUES, local, new Monoid<>(0L, sum())));
+
+        List<Long> longs = VALUES.stream().map(Long::valueOf).collect(Collectors.toList());
+        assertEquals((long) SIZE * (SIZE - 1) / 2, parallelism.reduce(3, longs, new Monoid<>(0L, sum())));
+    }
+
+    @DisplayName("Map-reduce with functions not leaving the process runs locally")
+    @Test
+    void testLocalFallback() throws InterruptedException {
+        IterativeParallelism parallelism = new IterativeParallelism(mapper);
+        assertEquals(VALUES.stream().mapToLong(value -> value * 2).sum(),
+                parallelism.mapReduce(3, VALUES, value -> value * 2L, new Monoid<>(0L, Long::sum)));
+    }
+
+    private static String request(final int port, final byte kind, final byte[] function) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeInt(0);
+            out.writeByte(kind);
+            out.write(function);
+            out.writeInt(9);
+            out.writeInt(1);
+            out.writeByte(1);
+            out.writeInt(SIZE);
+            out.flush();
+
+            assertEquals(0, in.readInt());
+            byte status = in.readByte();
+            in.readInt();
+            int count = in.readInt();
+            return status == 0 ? "OK " + count : in.readUTF();
+        }
+    }
+
+    @DisplayName("Workers run only remote functions")
+    @Test
+    void testRejected() throws IOException, URISyntaxException {
+        String classPath = Paths.get(MapperWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .toString();
+        Process worker = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-cp", classPath,
+                MapperWorker.class.getName(), "0", "--fork")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8));
+            int port = Integer.parseInt(reader.readLine().trim());
+
+            ByteArrayOutputStream name = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(name)) {
+                out.writeUTF(ProcessBuilder.class.getName());
+            }
+            assertTrue(request(port, (byte) 0, name.toByteArray()).contains("Not a remote function"));
+
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+                out.writeObject(new ConcurrentHashMap<>());
+            }
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(object)) {
+                out.writeInt(serialized.size());
+                serialized.writeTo(out);
+            }
+            assertTrue(request(port, (byte) 1, object.toByteArray()).contains("REJECTED"));
+        } finally {
+            worker.destroy();
+        }
+    }
+}
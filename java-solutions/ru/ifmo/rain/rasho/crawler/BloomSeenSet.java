@@ -0,0 +1,85 @@
+package ru.ifmo.rain.rasho.crawler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate {@link SeenSet} based on a Bloom filter.
+ * A URL never seen before is reported as seen with the configured false positive rate,
+ * as long as the number of URLs does not exceed the expected one. Such URLs are skipped by the crawl.
+ * <p>
+ * Bits are set atomically, additions of the same URL are serialized by a lock chosen by its fingerprint.
+ *
+ * @author Rasho Elizaveta
+ */
+public class BloomSeenSet implements SeenSet {
+
+    private static final int LOCK_BITS = 6;
+    private static final long ARRAY_OVERHEAD = 16;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final Object[] locks;
+    private final AtomicLong size;
+
+    /**
+     * Creates an empty {@code BloomSeenSet} sized for the expected number of URLs.
+     *
+     * @param expectedUrls      expected number of URLs
+     * @param falsePositiveRate false positive rate at the expected number of URLs
+     */
+    public BloomSeenSet(long expectedUrls, double falsePositiveRate) {
+        if (expectedUrls < 1) {
+            throw new IllegalArgumentException("Incorrect expected number of URLs: must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Incorrect false positive rate: must be in (0, 1)");
+        }
+        double bits = Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        double wordCount = Math.ceil(bits / Long.SIZE);
+        if (wordCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many expected URLs for the false positive rate");
+        }
+        words = new AtomicLongArray((int) wordCount);
+        bitCount = (long) words.length() * Long.SIZE;
+        hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedUrls * Math.log(2)));
+        locks = new Object[1 << LOCK_BITS];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        size = new AtomicLong();
+    }
+
+    @Override
+    public boolean add(final String url) {
+        long fingerprint = FingerprintSeenSet.fingerprint(url);
+        long step = Long.rotateLeft(fingerprint, 32) * 0x9e3779b97f4a7c15L | 1;
+        boolean added = false;
+        synchronized (locks[(int) (fingerprint >>> (Long.SIZE - LOCK_BITS))]) {
+            long hash = fingerprint;
+            for (int i = 0; i < hashCount; i++, hash += step) {
+                long bit = Math.floorMod(hash, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                if ((words.getAndAccumulate(word, mask, (previous, set) -> previous | set) & mask) == 0) {
+                    added = true;
+                }
+            }
+        }
+        if (added) {
+            size.incrementAndGet();
+        }
+        return added;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return ARRAY_OVERHEAD + (long) Long.BYTES * words.length();
+    }
+}
@@ -0,0 +1,484 @@
+package ru.ifmo.rain.rasho.crawler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * On-disk state of crawls sharing a directory: downloaded links and links extracted from them.
+ * <p>
+ * Events are appended to memory-mapped log segments {@code segment-<n>.log}. A record is
+ * {@code int length}, {@code byte type}, UTF-8 link and, for extracted links, {@code int count} and UTF-8 children,
+ * where every string is prefixed with its {@code int} length. The length is written after the record body,
+ * so a record torn by a crash has zero length and ends the segment.
+ * <p>
+ * Only the location of the latest record of every link is kept in memory, in a table of primitive longs indexed by
+ * the fingerprint of the link; extracted links are read back from the segments when they are needed.
+ * The state is restored by scanning the segments. A full segment is sealed, and a background thread compacts
+ * sealed segments holding mostly outdated records: it appends their live records again and deletes them.
+ * So the log stays proportional to the state, and appends never wait for the whole state to be written.
+ */
+class CrawlLog implements AutoCloseable {
+    private static final int SEGMENT_SIZE = 1 << 26;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte DOWNLOADED = 1;
+    private static final byte EXTRACTED = 2;
+
+    private static final long MISSING = -1;
+    private static final long EXTRACTED_FLAG = 1L << 62;
+
+    private final Path directory;
+    private final LocationIndex index;
+    private final Map<Integer, Segment> segments;
+    private final Thread compactor;
+
+    private Segment current;
+    private MappedByteBuffer buffer;
+    private IOException exception;
+    private boolean closed;
+
+    private static class Segment {
+        private final int number;
+        private final Path path;
+        private final FileChannel channel;
+        private int records;
+        private int live;
+        private boolean sealed;
+        private boolean compacting;
+
+        Segment(final int number, final Path path) throws IOException {
+            this.number = number;
+            this.path = path;
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+
+        boolean isGarbage() {
+            return sealed && !compacting && live * 2 <= records;
+        }
+
+        ByteBuffer read(final int offset) throws IOException {
+            ByteBuffer length = readFully(ByteBuffer.allocate(Integer.BYTES), offset);
+            return readFully(ByteBuffer.allocate(length.getInt()), offset + Integer.BYTES);
+        }
+
+        private ByteBuffer readFully(final ByteBuffer target, final long position) throws IOException {
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) {
+                    throw new IOException("Record is beyond the end of " + path);
+                }
+            }
+            return target.flip();
+        }
+    }
+
+    /**
+     * Open-addressing table from non-zero fingerprints to locations. Guarded by the monitor of the log.
+     */
+    private static class LocationIndex {
+        private long[] keys = new long[1 << 10];
+        private long[] values = new long[keys.length];
+        private int size;
+
+        long get(final long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) key & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return MISSING;
+        }
+
+        long put(final long key, final long value) {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                long[] oldKeys = keys;
+                long[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new long[keys.length];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != 0) {
+                        put(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            int mask = keys.length - 1;
+            int i = (int) key & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            long previous = keys[i] == 0 ? MISSING : values[i];
+            if (keys[i] == 0) {
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+            return previous;
+        }
+    }
+
+    CrawlLog(final Path directory) throws IOException {
+        this.directory = directory;
+        index = new LocationIndex();
+        segments = new HashMap<>();
+        Files.createDirectories(directory);
+
+        synchronized (this) {
+            TreeMap<Integer, Path> files = getSegments();
+            for (Map.Entry<Integer, Path> entry : files.entrySet()) {
+                readSegment(entry.getKey(), entry.getValue());
+            }
+            openSegment(files.isEmpty() ? 0 : files.lastKey() + 1, SEGMENT_SIZE);
+        }
+
+        compactor = new Thread(this::compact, "Crawl log compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    private static long location(final int segment, final int offset) {
+        return (long) segment << Integer.SIZE | offset;
+    }
+
+    private static int getSegment(final long location) {
+        return (int) ((location & ~EXTRACTED_FLAG) >>> Integer.SIZE);
+    }
+
+    private static int getOffset(final long location) {
+        return (int) location;
+    }
+
+    /**
+     * Checks whether the link was downloaded by this or a previous crawl.
+     */
+    synchronized boolean isDownloaded(final String link) {
+        return index.get(FingerprintSeenSet.fingerprint(link)) != MISSING;
+    }
+
+    /**
+     * Returns links extracted from the link by this or a previous crawl or {@code null} if they are unknown.
+     */
+    List<String> getChildren(final String link) {
+        long fingerprint = FingerprintSeenSet.fingerprint(link);
+        while (true) {
+            long location;
+            Segment segment;
+            synchronized (this) {
+                location = index.get(fingerprint);
+                if (closed || location == MISSING || (location & EXTRACTED_FLAG) == 0) {
+                    return null;
+                }
+                segment = segments.get(getSegment(location));
+            }
+            try {
+                ByteBuffer record = segment.read(getOffset(location));
+                record.get();
+                if (!readString(record).equals(link)) {
+                    return null;
+                }
+                int count = record.getInt();
+                List<String> children = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    children.add(readString(record));
+                }
+                return children;
+            } catch (ClosedChannelException e) {
+                // The segment is compacted, the record has moved
+            } catch (IOException | BufferUnderflowException e) {
+                return null;
+            }
+        }
+    }
+
+    void downloaded(final String link) {
+        long fingerprint = FingerprintSeenSet.fingerprint(link);
+        synchronized (this) {
+            if (exception == null && index.get(fingerprint) == MISSING) {
+                try {
+                    update(fingerprint, append(encode(DOWNLOADED, link, null)));
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }
+        }
+    }
+
+    void extracted(final String link, final List<String> children) {
+        long fingerprint = FingerprintSeenSet.fingerprint(link);
+        try {
+            byte[] record = encode(EXTRACTED, link, children);
+            synchronized (this) {
+                if (exception == null) {
+                    update(fingerprint, append(record) | EXTRACTED_FLAG);
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                exception = e;
+            }
+        }
+    }
+
+    /**
+     * Appends the record to the current segment and returns its location. Must be called holding the monitor.
+     */
+    private long append(final byte[] record) throws IOException {
+        if (buffer.remaining() < Integer.BYTES + record.length) {
+            sealSegment();
+            openSegment(current.number + 1, Math.max(SEGMENT_SIZE, Integer.BYTES + record.length));
+        }
+        int position = buffer.position();
+        buffer.position(position + Integer.BYTES);
+        buffer.put(record);
+        buffer.putInt(position, record.length);
+        current.records++;
+        current.live++;
+        return location(current.number, position);
+    }
+
+    /**
+     * Points the link to its new latest record, the previous record becomes outdated.
+     * Must be called holding the monitor.
+     */
+    private void update(final long fingerprint, final long location) {
+        long previous = index.put(fingerprint, location);
+        if (previous != MISSING) {
+            Segment segment = segments.get(getSegment(previous));
+            if (segment != null) {
+                segment.live--;
+                if (segment.isGarbage()) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(final byte type, final String link, final List<String> children) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            writeString(out, link);
+            if (type == EXTRACTED) {
+                out.writeInt(children.size());
+                for (String child : children) {
+                    writeString(out, child);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface RecordConsumer {
+        /**
+         * Accepts the record positioned after its link and returns whether the scan goes on.
+         */
+        boolean accept(int offset, byte type, String link, ByteBuffer record) throws IOException;
+    }
+
+    /**
+     * Passes every complete record of the segment file to the consumer and returns whether all records are passed.
+     */
+    private static boolean scanSegment(final Path path, final RecordConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (in.remaining() >= Integer.BYTES) {
+                int offset = in.position();
+                int length = in.getInt();
+                if (length <= 0 || length > in.remaining()) {
+                    break;
+                }
+                ByteBuffer record = in.slice(in.position(), length);
+                in.position(in.position() + length);
+                try {
+                    byte type = record.get();
+                    if (!consumer.accept(offset, type, readString(record), record)) {
+                        return false;
+                    }
+                } catch (BufferUnderflowException e) {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores locations of records of the segment. A downloaded record never hides a record of extracted links,
+     * it may be appended later only as a copy made by the compaction.
+     */
+    private void readSegment(final int number, final Path path) throws IOException {
+        Segment segment = new Segment(number, path);
+        segment.sealed = true;
+        segments.put(number, segment);
+        scanSegment(path, (offset, type, link, record) -> {
+            long fingerprint = FingerprintSeenSet.fingerprint(link);
+            segment.records++;
+            if (type == EXTRACTED) {
+                segment.live++;
+                update(fingerprint, location(number, offset) | EXTRACTED_FLAG);
+            } else if (index.get(fingerprint) == MISSING) {
+                segment.live++;
+                update(fingerprint, location(number, offset));
+            }
+            return true;
+        });
+    }
+
+    private Path getSegmentPath(final int number) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private TreeMap<Integer, Path> getSegments() throws IOException {
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        files.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())), file);
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            });
+        }
+        return files;
+    }
+
+    private void sealSegment() {
+        buffer.force();
+        current.sealed = true;
+        if (current.isGarbage()) {
+            notifyAll();
+        }
+    }
+
+    private void openSegment(final int number, final int size) throws IOException {
+        Path path = getSegmentPath(number);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        current = new Segment(number, path);
+        segments.put(number, current);
+    }
+
+    private synchronized Segment takeGarbage() throws InterruptedException {
+        while (!closed) {
+            for (Segment segment : segments.values()) {
+                if (segment.isGarbage()) {
+                    segment.compacting = true;
+                    return segment;
+                }
+            }
+            wait();
+        }
+        return null;
+    }
+
+    private void compact() {
+        try {
+            for (Segment segment = takeGarbage(); segment != null; segment = takeGarbage()) {
+                if (!compact(segment)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            synchronized (this) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends live records of the sealed segment again and deletes it, unless the log is closed meanwhile.
+     * The segment file is read without the monitor, only appends of single records hold it.
+     */
+    private boolean compact(final Segment segment) throws IOException {
+        boolean compacted = scanSegment(segment.path, (offset, type, link, record) -> {
+            long fingerprint = FingerprintSeenSet.fingerprint(link);
+            long location = location(segment.number, offset) | (type == EXTRACTED ? EXTRACTED_FLAG : 0);
+            byte[] copy = new byte[record.limit()];
+            record.get(0, copy);
+            synchronized (this) {
+                if (closed || exception != null) {
+                    return false;
+                }
+                if (index.get(fingerprint) == location) {
+                    update(fingerprint, append(copy) | (location & EXTRACTED_FLAG));
+                }
+                return true;
+            }
+        });
+        if (!compacted) {
+            return false;
+        }
+        synchronized (this) {
+            buffer.force();
+            segments.remove(segment.number);
+        }
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        return true;
+    }
+
+    /**
+     * Stops the compaction and forces appended records to the disk.
+     *
+     * @throws IOException if this or any previous write failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            compactor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            buffer.force();
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+}
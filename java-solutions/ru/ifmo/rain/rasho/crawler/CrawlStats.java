@@ -0,0 +1,49 @@
+package ru.ifmo.rain.rasho.crawler;
+
+/**
+ * Statistics of a finished crawl.
+ *
+ * @author Rasho Elizaveta
+ */
+public class CrawlStats {
+    private final long seenUrls;
+    private final long seenSetMemoryUsage;
+
+    CrawlStats(final long seenUrls, final long seenSetMemoryUsage) {
+        this.seenUrls = seenUrls;
+        this.seenSetMemoryUsage = seenSetMemoryUsage;
+    }
+
+    /**
+     * Returns number of distinct URLs seen by the crawl.
+     *
+     * @return number of seen URLs
+     */
+    public long getSeenUrls() {
+        return seenUrls;
+    }
+
+    /**
+     * Returns estimated number of heap bytes held by the seen-set of the crawl.
+     *
+     * @return heap usage in bytes
+     */
+    public long getSeenSetMemoryUsage() {
+        return seenSetMemoryUsage;
+    }
+
+    /**
+     * Returns estimated number of heap bytes of the seen-set per seen URL.
+     *
+     * @return heap usage per URL in bytes
+     */
+    public double getBytesPerUrl() {
+        return seenUrls == 0 ? 0 : (double) seenSetMemoryUsage / seenUrls;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Seen URLs: %d, seen-set heap usage: %d bytes (%.1f bytes per URL)",
+                seenUrls, seenSetMemoryUsage, getBytesPerUrl());
+    }
+}
@@ -0,0 +1,135 @@
+package ru.ifmo.rain.rasho.crawler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link SeenSet} keeping 64-bit fingerprints of URLs in open-addressing tables of primitive longs.
+ * Two distinct URLs are confused only if their fingerprints collide,
+ * which takes about four billion URLs to become likely.
+ * <p>
+ * The greatest rest depth of every URL is kept in a parallel array of bytes. Depths above {@value #MAX_DEPTH}
+ * are kept as {@value #MAX_DEPTH}, and a URL reached with such a depth is reported as reached with any depth.
+ * <p>
+ * The set is split into segments by the highest fingerprint bits, every segment is guarded by its own monitor.
+ *
+ * @author Rasho Elizaveta
+ */
+public class FingerprintSeenSet implements SeenSet {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 1 << 6;
+    private static final long SEGMENT_OVERHEAD = 64;
+    private static final int MAX_DEPTH = 0xFF;
+
+    private final Segment[] segments;
+    private final AtomicLong size;
+
+    /**
+     * Creates an empty {@code FingerprintSeenSet}.
+     */
+    public FingerprintSeenSet() {
+        segments = new Segment[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+        size = new AtomicLong();
+    }
+
+    /**
+     * Returns non-zero 64-bit fingerprint of the string: FNV-1a hash of its chars with the MurmurHash3 finalizer.
+     */
+    static long fingerprint(final String string) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static class Segment {
+        private long[] table = new long[INITIAL_CAPACITY];
+        private byte[] depths = new byte[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * Raises the kept depth of the fingerprint and returns the previous one, {@code 0} if it is added.
+         */
+        int add(final long fingerprint, final int depth) {
+            if ((size + 1) * 4L > table.length * 3L) {
+                resize();
+            }
+            int i = find(table, fingerprint);
+            if (table[i] == 0) {
+                table[i] = fingerprint;
+                size++;
+            }
+            int previous = Byte.toUnsignedInt(depths[i]);
+            depths[i] = (byte) Math.max(previous, depth);
+            return previous;
+        }
+
+        private static int find(final long[] table, final long fingerprint) {
+            int mask = table.length - 1;
+            int i = (int) fingerprint & mask;
+            while (table[i] != 0 && table[i] != fingerprint) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void resize() {
+            long[] oldTable = table;
+            byte[] oldDepths = depths;
+            table = new long[oldTable.length * 2];
+            depths = new byte[table.length];
+            for (int j = 0; j < oldTable.length; j++) {
+                if (oldTable[j] != 0) {
+                    int i = find(table, oldTable[j]);
+                    table[i] = oldTable[j];
+                    depths[i] = oldDepths[j];
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean add(final String url) {
+        return add(url, 1) == 0;
+    }
+
+    @Override
+    public int add(final String url, final int restDepth) {
+        long fingerprint = fingerprint(url);
+        Segment segment = segments[(int) (fingerprint >>> (Long.SIZE - SEGMENT_BITS))];
+        int previous;
+        synchronized (segment) {
+            previous = segment.add(fingerprint, Math.min(restDepth, MAX_DEPTH));
+        }
+        if (previous == 0) {
+            size.incrementAndGet();
+        }
+        return previous == MAX_DEPTH ? Integer.MAX_VALUE : previous;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += SEGMENT_OVERHEAD + (long) (Long.BYTES + Byte.BYTES) * segment.table.length;
+            }
+        }
+        return bytes;
+    }
+}
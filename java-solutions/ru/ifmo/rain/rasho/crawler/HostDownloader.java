@@ -1,43 +1,143 @@
 package ru.ifmo.rain.rasho.crawler;
 
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Runs tasks of a host in the pool, at most {@code perHost} at a time.
+ * <p>
+ * Admission is lock-free: a task is started only after a permit is taken from the counter.
+ * Whoever returns a permit checks the queue again, so a task added while all permits were taken
+ * is started by the task releasing the permit.
+ * <p>
+ * Starts of tasks may also be rate limited by a token bucket of {@code burst} tokens refilled every
+ * {@code interval} nanoseconds. A task with a permit takes a token right before it is run in the pool;
+ * if the bucket is empty, the task waits for the next token in the timer wheel instead of a thread of the pool.
+ * <p>
+ * Every task comes with a cancellation called instead of the task once the pool or the timer wheel is closed,
+ * so the permit is returned and the owner of the task learns it is not run.
+ */
 class HostDownloader {
 
     private final ExecutorService downloadersPool;
-    private final Queue<Runnable> waitingTasks;
-    private final int perHost;
-    private int activeTasks;
+    private final Queue<Task> waitingTasks;
+    private final AtomicInteger permits;
+    private final long interval;
+    private final long burstTolerance;
+    private final TimerWheel timer;
+    private final AtomicLong fullTime;
 
-    HostDownloader(final int perHost, final ExecutorService downloadersPool) {
+    private static class Task {
+        private final Runnable download;
+        private final Runnable cancellation;
+
+        Task(final Runnable download, final Runnable cancellation) {
+            this.download = download;
+            this.cancellation = cancellation;
+        }
+    }
+
+    HostDownloader(final int perHost, final ExecutorService downloadersPool,
+                   final long interval, final int burst, final TimerWheel timer) {
         this.downloadersPool = downloadersPool;
-        this.perHost = perHost;
-
-        activeTasks = 0;
-        waitingTasks = new LinkedList<>();
-    }
-
-    synchronized private void tryCallNext() {
-        if (activeTasks < perHost) {
-            Runnable task = waitingTasks.poll();
-            if (task != null) {
-                activeTasks++;
-                downloadersPool.submit(() -> {
-                    try {
-                        task.run();
-                    } finally {
-                        activeTasks--;
-                        tryCallNext();
-                    }
-                });
+        this.interval = interval;
+        this.timer = timer;
+
+        permits = new AtomicInteger(perHost);
+        waitingTasks = new ConcurrentLinkedQueue<>();
+        burstTolerance = (burst - 1) * interval;
+        fullTime = new AtomicLong(System.nanoTime());
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int available = permits.get();
+            if (available <= 0) {
+                return false;
+            }
+            if (permits.compareAndSet(available, available - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void tryCallNext() {
+        while (!waitingTasks.isEmpty() && tryAcquire()) {
+            Task task = waitingTasks.poll();
+            if (task == null) {
+                permits.incrementAndGet();
+                continue;
+            }
+            submit(task);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket and returns zero or returns nanoseconds left until the next token.
+     * {@code fullTime} is the time the bucket becomes full again, a token is available
+     * while it is at most {@code burstTolerance} ahead.
+     */
+    private long tryTakeToken() {
+        while (true) {
+            long now = System.nanoTime();
+            long full = fullTime.get();
+            long wait = full - burstTolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullTime.compareAndSet(full, Math.max(full, now) + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    private void submit(final Task task) {
+        try {
+            downloadersPool.submit(() -> start(task));
+        } catch (RejectedExecutionException e) {
+            reject(task);
+        }
+    }
+
+    private void start(final Task task) {
+        long delay = interval == 0 ? 0 : tryTakeToken();
+        if (delay > 0) {
+            timer.schedule(() -> submit(task), () -> reject(task), delay);
+            return;
+        }
+        try {
+            task.download.run();
+        } finally {
+            permits.incrementAndGet();
+            tryCallNext();
+        }
+    }
+
+    /**
+     * Cancels the task holding a permit and all waiting tasks, as none of them can be run anymore.
+     * Tasks added later are cancelled by their own rejection.
+     */
+    private void reject(final Task task) {
+        permits.incrementAndGet();
+        try {
+            task.cancellation.run();
+        } finally {
+            for (Task waiting = waitingTasks.poll(); waiting != null; waiting = waitingTasks.poll()) {
+                waiting.cancellation.run();
             }
         }
     }
 
-    synchronized void add(final Runnable task) {
-        waitingTasks.add(task);
+    /**
+     * Runs the download in the pool when a permit and a token are available.
+     * The cancellation is called instead if the pool or the timer wheel is closed before.
+     */
+    void add(final Runnable download, final Runnable cancellation) {
+        waitingTasks.add(new Task(download, cancellation));
         tryCallNext();
     }
 }
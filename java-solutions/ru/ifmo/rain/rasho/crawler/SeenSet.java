@@ -0,0 +1,42 @@
+package ru.ifmo.rain.rasho.crawler;
+
+/**
+ * Set of URLs already seen by a crawl. Implementations must be thread-safe.
+ *
+ * @author Rasho Elizaveta
+ */
+public interface SeenSet {
+    /**
+     * Adds the URL to the set.
+     *
+     * @param url URL to add
+     * @return {@code true} if the URL was not seen before
+     */
+    boolean add(String url);
+
+    /**
+     * Adds the URL reached with the rest depth.
+     * Sets not keeping depths report every seen URL as reached with the {@link Integer#MAX_VALUE} rest depth.
+     *
+     * @param url       URL to add
+     * @param restDepth positive rest depth the URL is reached with
+     * @return greatest rest depth the URL was reached with before or {@code 0} if the URL was not seen before
+     */
+    default int add(String url, int restDepth) {
+        return add(url) ? 0 : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns number of added distinct URLs.
+     *
+     * @return number of URLs
+     */
+    long size();
+
+    /**
+     * Returns estimated number of heap bytes held by the set.
+     *
+     * @return heap usage in bytes
+     */
+    long getMemoryUsage();
+}
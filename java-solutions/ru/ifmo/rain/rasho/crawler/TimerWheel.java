@@ -0,0 +1,158 @@
+package ru.ifmo.rain.rasho.crawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel running delayed tasks in a single daemon thread.
+ * Tasks must be short, for example submit work to a pool; they are run no earlier than requested
+ * and at most one tick of {@value #TICK_MILLIS} ms later.
+ * <p>
+ * Scheduling only appends the task to a concurrent queue; the timer thread moves queued tasks to the bucket
+ * of their tick, so the buckets are accessed by the timer thread alone. The thread parks while there are no tasks.
+ * <p>
+ * Every task comes with a cancellation, which is called instead of the task if the wheel is closed first,
+ * so owners of the tasks can release resources held for them.
+ */
+class TimerWheel implements AutoCloseable {
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final long startTime;
+    private final Queue<Timeout> scheduled;
+    private final List<List<Timeout>> buckets;
+    private final Thread thread;
+
+    private volatile boolean closed;
+    private long tick;
+    private int size;
+
+    private static class Timeout {
+        private final long deadline;
+        private final Runnable task;
+        private final Runnable cancellation;
+        private long rounds;
+
+        Timeout(final long deadline, final Runnable task, final Runnable cancellation) {
+            this.deadline = deadline;
+            this.task = task;
+            this.cancellation = cancellation;
+        }
+    }
+
+    TimerWheel() {
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+        startTime = System.nanoTime();
+        scheduled = new ConcurrentLinkedQueue<>();
+        buckets = new ArrayList<>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        thread = new Thread(this::run, "Crawler timer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs the task in the timer thread after the delay.
+     * If the wheel is closed before, the cancellation is called instead, at once if it is closed already.
+     */
+    void schedule(final Runnable task, final Runnable cancellation, final long delayNanos) {
+        scheduled.add(new Timeout(System.nanoTime() - startTime + delayNanos, task, cancellation));
+        if (closed) {
+            cancelScheduled();
+        } else {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            long now = System.nanoTime() - startTime;
+            if (size == 0) {
+                if (scheduled.isEmpty()) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                tick = Math.max(tick, now / tickNanos);
+            }
+            transfer();
+            while (tick * tickNanos <= now) {
+                expire(buckets.get((int) (tick % WHEEL_SIZE)));
+                tick++;
+            }
+            if (size > 0) {
+                LockSupport.parkNanos(this, tick * tickNanos - (System.nanoTime() - startTime));
+            }
+        }
+        for (List<Timeout> bucket : buckets) {
+            for (Timeout timeout : bucket) {
+                call(timeout.cancellation);
+            }
+            bucket.clear();
+        }
+        size = 0;
+        cancelScheduled();
+    }
+
+    /**
+     * Cancels tasks not transferred to the buckets. Called by the timer thread once it is stopped
+     * and by threads scheduling after that, every timeout is polled by one of them.
+     */
+    private void cancelScheduled() {
+        for (Timeout timeout = scheduled.poll(); timeout != null; timeout = scheduled.poll()) {
+            call(timeout.cancellation);
+        }
+    }
+
+    /**
+     * Runs the action reporting its failure to the uncaught exception handler of the current thread,
+     * so a failed task neither stops other timers nor goes unnoticed.
+     */
+    private static void call(final Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e);
+        }
+    }
+
+    private void transfer() {
+        for (Timeout timeout = scheduled.poll(); timeout != null; timeout = scheduled.poll()) {
+            long deadlineTick = Math.max(tick, (timeout.deadline + tickNanos - 1) / tickNanos);
+            timeout.rounds = (deadlineTick - tick) / WHEEL_SIZE;
+            buckets.get((int) (deadlineTick % WHEEL_SIZE)).add(timeout);
+            size++;
+        }
+    }
+
+    private void expire(final List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                bucket.set(kept++, timeout);
+                continue;
+            }
+            size--;
+            call(timeout.task);
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    /**
+     * Stops the timer thread. Cancellations of tasks not run yet are called by the timer thread before it exits.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+}
@@ -2,19 +2,24 @@ package ru.ifmo.rain.rasho.crawler;
 
 import info.kgeorgiy.java.advanced.crawler.*;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class WebCrawler implements Crawler {
 
     private static final String MAIN_USAGE = "Usage: WebCrawler url [depth [downloaders [extractors [perHost]]]]";
     private static final int DEFAULT_VALUE = 1;
+    private static final int RETAINED_DOCUMENTS = 1 << 10;
 
     private final Downloader downloader;
     private final int perHost;
@@ -22,10 +27,79 @@ public class WebCrawler implements Crawler {
     private final ExecutorService extractorsPool;
     private final ExecutorService downloadersPool;
     private final ConcurrentMap<String, HostDownloader> hostDownloaders;
+    private final Supplier<? extends SeenSet> seenSets;
+    private final long politenessDelay;
+    private final int burst;
+    private final TimerWheel timer;
+
+    private volatile CrawlStats stats;
 
     public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost) {
+        this(downloader, downloaders, extractors, perHost, null, Duration.ZERO, 1);
+    }
+
+    /**
+     * Creates a crawler remembering seen links of every crawl in a new set of the {@code seenSets}.
+     * Only records of links being processed are kept, and the set keeps the greatest depth every link is reached with.
+     * A link is never downloaded twice by a crawl: a link discovered again with a greater depth after it has been
+     * processed visits its links deeper only if they are kept by the crawl state of
+     * {@link #download(String, int, Path)}, otherwise the result may miss links of the breadth-first traversal.
+     * With the crawl state, links of every document downloaded by the crawl are extracted and kept,
+     * so with an exact set and a new state directory the result is the same as of the breadth-first traversal.
+     * If {@code seenSets} is {@code null}, records of all links are kept until the crawl ends.
+     *
+     * @param downloader  downloader of documents
+     * @param downloaders number of downloading threads
+     * @param extractors  number of extracting threads
+     * @param perHost     maximum number of simultaneous downloads from a host
+     * @param seenSets    factory of seen-sets or {@code null}
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost,
+                      Supplier<? extends SeenSet> seenSets) {
+        this(downloader, downloaders, extractors, perHost, seenSets, Duration.ZERO, 1);
+    }
+
+    /**
+     * Creates a crawler starting downloads from a host at least {@code politenessDelay} apart.
+     *
+     * @param downloader      downloader of documents
+     * @param downloaders     number of downloading threads
+     * @param extractors      number of extracting threads
+     * @param perHost         maximum number of simultaneous downloads from a host
+     * @param politenessDelay minimum delay between starts of downloads from a host
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost, Duration politenessDelay) {
+        this(downloader, downloaders, extractors, perHost, null, politenessDelay, 1);
+    }
+
+    /**
+     * Creates a crawler limiting the rate of downloads from every host by a token bucket:
+     * up to {@code burst} downloads may start at once, then one per {@code politenessDelay}.
+     * Throttled downloads wait in a shared timer without occupying downloading threads.
+     *
+     * @param downloader      downloader of documents
+     * @param downloaders     number of downloading threads
+     * @param extractors      number of extracting threads
+     * @param perHost         maximum number of simultaneous downloads from a host
+     * @param seenSets        factory of seen-sets or {@code null}, see
+     *                        {@link #WebCrawler(Downloader, int, int, int, Supplier)}
+     * @param politenessDelay time to refill one token of the bucket, zero disables the rate limit
+     * @param burst           capacity of the bucket
+     */
+    public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost,
+                      Supplier<? extends SeenSet> seenSets, Duration politenessDelay, int burst) {
+        if (politenessDelay.isNegative()) {
+            throw new IllegalArgumentException("Incorrect politeness delay: must be non-negative");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Incorrect burst: must be positive");
+        }
         this.downloader = downloader;
         this.perHost = perHost;
+        this.seenSets = seenSets;
+        this.politenessDelay = politenessDelay.toNanos();
+        this.burst = burst;
+        timer = this.politenessDelay == 0 ? null : new TimerWheel();
 
         downloadersPool = Executors.newFixedThreadPool(downloaders);
         extractorsPool = Executors.newFixedThreadPool(extractors);
@@ -34,13 +108,44 @@ public class WebCrawler implements Crawler {
 
     @Override
     public Result download(String url, int depth) {
-        return new RecursiveDownloader().download(url, depth);
+        return new RecursiveDownloader(null).download(url, depth);
+    }
+
+    /**
+     * Downloads like {@link #download(String, int)} keeping the crawl state in the {@code stateDirectory}.
+     * Links downloaded by previous crawls with the same directory, including interrupted ones, are not downloaded again
+     * unless links extracted from them are needed and unknown.
+     *
+     * @param url            start URL
+     * @param depth          download depth
+     * @param stateDirectory directory of the crawl state
+     * @return download result
+     * @throws UncheckedIOException if the crawl state could not be read or written
+     */
+    public Result download(String url, int depth, Path stateDirectory) {
+        try (CrawlLog log = new CrawlLog(stateDirectory)) {
+            return new RecursiveDownloader(log).download(url, depth);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Crawl state could not be saved: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns statistics of the last finished crawl using a seen-set.
+     *
+     * @return crawl statistics or {@code null} if there were no such crawls
+     */
+    public CrawlStats getStats() {
+        return stats;
     }
 
     @Override
     public void close() {
         extractorsPool.shutdown();
         downloadersPool.shutdown();
+        if (timer != null) {
+            timer.close();
+        }
     }
 
     private class RecursiveDownloader {
@@ -48,70 +153,320 @@ public class WebCrawler implements Crawler {
         private final CopyOnWriteArrayList<String> downloaded;
         private final ConcurrentMap<String, IOException> errors;
 
-        private final Set<String> processedLinks;
-        private final ConcurrentLinkedQueue<String> linksQueue;
+        private final ConcurrentMap<String, Link> links;
+        private final Queue<Link> retained;
+        private final AtomicInteger retainedCount;
+        private final Phaser phaser;
+        private final CrawlLog log;
+        private final SeenSet seen;
+        private final boolean extractLeaves;
 
-        RecursiveDownloader() {
+        RecursiveDownloader(final CrawlLog log) {
+            this.log = log;
+            seen = seenSets == null ? null : seenSets.get();
+            extractLeaves = seen != null && log != null;
             downloaded = new CopyOnWriteArrayList<>();
-            linksQueue = new ConcurrentLinkedQueue<>();
             errors = new ConcurrentHashMap<>();
-            processedLinks = ConcurrentHashMap.newKeySet();
+            links = new ConcurrentHashMap<>();
+            retained = new ConcurrentLinkedQueue<>();
+            retainedCount = new AtomicInteger();
+            phaser = new Phaser(1);
         }
 
         Result download(final String url, final int depth) {
-            linksQueue.add(url);
-            for (int i = 0; i < depth; i++) {
-                List<String> currentDepthLinks = new ArrayList<>(linksQueue);
-                linksQueue.clear();
+            try {
+                visit(url, depth);
+            } finally {
+                phaser.arriveAndAwaitAdvance();
+            }
+            if (seen != null) {
+                stats = new CrawlStats(seen.size(), seen.getMemoryUsage());
+            }
+            return new Result(downloaded, errors);
+        }
 
-                final Phaser phaser = new Phaser(1);
-                try {
-                    final int restDepth = depth - i;
-                    currentDepthLinks.stream()
-                            .parallel()
-                            .filter(processedLinks::add)
-                            .forEach(link -> processLink(link, restDepth, phaser));
-                } finally {
-                    phaser.arriveAndAwaitAdvance();
+        /**
+         * Schedules the link as soon as it is discovered.
+         * A link discovered again with a greater rest depth passes the greater depth on to its already
+         * extracted children, so the result is the same as of the breadth-first traversal.
+         * With a seen-set, links are tracked only until they are completed; a completed link discovered again
+         * with a depth greater than the one kept by the set is tracked anew to visit its links kept by the crawl log,
+         * but it is not downloaded again.
+         */
+        private void visit(final String url, final int restDepth) {
+            Link link;
+            boolean download = false;
+            boolean extract = false;
+            List<String> children = null;
+            while (true) {
+                link = seen == null
+                        ? links.computeIfAbsent(url, Link::new)
+                        : links.computeIfAbsent(url, u -> reach(u, restDepth));
+                if (link == null) {
+                    return;
+                }
+                synchronized (link) {
+                    if (restDepth <= link.restDepth) {
+                        return;
+                    }
+                    if (!link.completed) {
+                        link.restDepth = restDepth;
+                        if (seen != null) {
+                            seen.add(url, restDepth);
+                        }
+                        if (!link.scheduled) {
+                            link.scheduled = true;
+                            download = true;
+                        } else if (link.children != null) {
+                            children = link.children;
+                        } else {
+                            extract = link.startExtraction(extractLeaves);
+                            download = !extract && link.startRedownload();
+                        }
+                        break;
+                    }
                 }
+                links.remove(url, link);
+            }
+            if (download) {
+                processLink(link);
+            } else if (extract) {
+                extractLinks(link);
+            } else {
+                visitChildren(children, restDepth);
+            }
+        }
+
+        /**
+         * Tracks the link, if the seen-set keeps a smaller rest depth for it.
+         * A link reached before is already listed in the result and is tracked again only if the crawl log
+         * may keep its extracted links.
+         */
+        private Link reach(final String url, final int restDepth) {
+            int previous = seen.add(url, restDepth);
+            if (previous >= restDepth || previous > 0 && log == null) {
+                return null;
+            }
+            Link link = new Link(url);
+            link.listed = previous > 0;
+            return link;
+        }
+
+        private void visitChildren(final List<String> children, final int restDepth) {
+            if (children != null && restDepth > 1) {
+                children.forEach(child -> visit(child, restDepth - 1));
             }
-            return new Result(downloaded, errors);
         }
 
-        private void updateQueue(final Document document, final Phaser phaser) {
+        private void extractLinks(final Link link) {
             phaser.register();
             extractorsPool.submit(() -> {
                 try {
-                    linksQueue.addAll(document.extractLinks());
-                } catch (IOException ignored) {
+                    List<String> children;
+                    try {
+                        children = link.document.extractLinks();
+                        if (log != null) {
+                            log.extracted(link.url, children);
+                        }
+                    } catch (IOException e) {
+                        children = List.of();
+                    }
+                    int restDepth;
+                    synchronized (link) {
+                        link.children = children;
+                        link.document = null;
+                        link.extracting = false;
+                        link.completed = seen != null;
+                        restDepth = link.restDepth;
+                    }
+                    forget(link);
+                    visitChildren(children, restDepth);
                 } finally {
                     phaser.arrive();
                 }
             });
         }
 
-        void processLink(final String link, final int restDepth, final Phaser phaser) {
+        /**
+         * Restores the link downloaded by a previous crawl, if its extracted links are known or not needed.
+         * With a seen-set, a link listed by this crawl is always restored, as it is never downloaded twice.
+         */
+        private boolean restore(final Link link) {
+            if (log == null || !log.isDownloaded(link.url)) {
+                return false;
+            }
+            List<String> children = log.getChildren(link.url);
+            int restDepth;
+            boolean listed;
+            synchronized (link) {
+                if (children == null && link.restDepth > 1 && (seen == null || !link.listed)) {
+                    return false;
+                }
+                listed = link.listed;
+                link.listed = true;
+                link.children = children;
+                link.leaf = children == null;
+                link.completed = seen != null;
+                restDepth = link.restDepth;
+            }
+            forget(link);
+            if (!listed) {
+                downloaded.add(link.url);
+            }
+            visitChildren(children, restDepth);
+            return true;
+        }
+
+        private void processLink(final Link link) {
+            if (restore(link)) {
+                return;
+            }
             String host;
             try {
-                host = URLUtils.getHost(link);
-                HostDownloader hostDownloader = hostDownloaders.computeIfAbsent(host, s -> new HostDownloader(perHost, downloadersPool));
+                host = URLUtils.getHost(link.url);
+                HostDownloader hostDownloader = hostDownloaders.computeIfAbsent(host,
+                        s -> new HostDownloader(perHost, downloadersPool, politenessDelay, burst, timer));
                 phaser.register();
                 hostDownloader.add(() -> {
                     try {
-                        Document document = downloader.download(link);
-                        if (restDepth > 1) {
-                            updateQueue(document, phaser);
+                        Document document = downloader.download(link.url);
+                        if (log != null) {
+                            log.downloaded(link.url);
+                        }
+                        boolean listed;
+                        boolean extract;
+                        synchronized (link) {
+                            listed = link.listed;
+                            link.listed = true;
+                            link.document = document;
+                            extract = link.startExtraction(extractLeaves);
+                            if (!extract && seen != null) {
+                                link.document = null;
+                                link.completed = true;
+                            }
+                        }
+                        if (!listed) {
+                            downloaded.add(link.url);
+                        }
+                        if (extract) {
+                            extractLinks(link);
+                        } else if (seen == null) {
+                            retain(link);
+                        } else {
+                            forget(link);
                         }
-                        downloaded.add(link);
                     } catch (IOException e) {
-                        errors.put(link, e);
+                        fail(link, e);
+                    } finally {
+                        phaser.arrive();
+                    }
+                }, () -> {
+                    try {
+                        fail(link, new IOException("Download cancelled: crawler is closed"));
                     } finally {
                         phaser.arrive();
                     }
                 });
             } catch (MalformedURLException e) {
-                errors.put(link, e);
+                fail(link, e);
+            }
+        }
+
+        /**
+         * Completes the link failed to download. The error is reported unless the link is downloaded before,
+         * the seen-set keeps the link as reached with any depth, so it is not tried again.
+         */
+        private void fail(final Link link, final IOException e) {
+            boolean listed;
+            synchronized (link) {
+                listed = link.listed;
+                link.completed = seen != null;
+            }
+            if (seen != null) {
+                seen.add(link.url, Integer.MAX_VALUE);
+            }
+            forget(link);
+            if (!listed) {
+                errors.put(link.url, e);
+            }
+        }
+
+        /**
+         * Keeps the document of the downloaded leaf for a rediscovery with a greater depth.
+         * At most {@value #RETAINED_DOCUMENTS} documents are kept, links of the oldest one beyond the bound
+         * are extracted and kept instead of the document, so no link is downloaded twice.
+         */
+        private void retain(final Link link) {
+            retained.add(link);
+            if (retainedCount.incrementAndGet() <= RETAINED_DOCUMENTS) {
+                return;
+            }
+            Link oldest = retained.poll();
+            retainedCount.decrementAndGet();
+            if (oldest == null) {
+                return;
+            }
+            boolean extract = false;
+            synchronized (oldest) {
+                if (oldest.document != null && !oldest.extracting) {
+                    oldest.extracting = true;
+                    extract = true;
+                }
+            }
+            if (extract) {
+                extractLinks(oldest);
+            }
+        }
+
+        /**
+         * Drops the record of the completed link, the seen-set keeps it from being processed again.
+         */
+        private void forget(final Link link) {
+            if (seen != null) {
+                links.remove(link.url, link);
+            }
+        }
+    }
+
+    private static class Link {
+        private final String url;
+        private int restDepth;
+        private boolean scheduled;
+        private boolean extracting;
+        private boolean listed;
+        private boolean leaf;
+        private boolean completed;
+        private Document document;
+        private List<String> children;
+
+        Link(final String url) {
+            this.url = url;
+        }
+
+        /**
+         * Checks whether links of the downloaded document are needed, or kept for {@code leaves} too,
+         * and not being extracted yet.
+         * Must be called holding the monitor of the link.
+         */
+        boolean startExtraction(final boolean leaves) {
+            if (document != null && (restDepth > 1 || leaves) && !extracting) {
+                extracting = true;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Checks whether the link restored from the crawl log without extracted links
+         * has to be downloaded again to extract them.
+         * Must be called holding the monitor of the link.
+         */
+        boolean startRedownload() {
+            if (leaf && restDepth > 1) {
+                leaf = false;
+                return true;
             }
+            return false;
         }
     }
 
@@ -0,0 +1,99 @@
+package ru.ifmo.rain.rasho.crawler.tests;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.rasho.crawler.WebCrawler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Per-host limit stress tests")
+class HostDownloaderTests {
+
+    private static final int HOSTS = 5;
+    private static final int PAGES = 2000;
+    private static final int DOWNLOADERS = 32;
+    private static final int ROUNDS = 5;
+
+    private static String getUrl(final int page) {
+        return "http://host" + page % HOSTS + ".com/page" + page;
+    }
+
+    private static class LimitCheckingDownloader implements Downloader {
+        private final List<String> pages;
+        private final ConcurrentMap<String, AtomicInteger> active = new ConcurrentHashMap<>();
+        private final AtomicInteger maxActive = new AtomicInteger();
+
+        LimitCheckingDownloader(final List<String> pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        public Document download(final String url) throws IOException {
+            AtomicInteger hostActive = active.computeIfAbsent(URLUtils.getHost(url), host -> new AtomicInteger());
+            maxActive.accumulateAndGet(hostActive.incrementAndGet(), Math::max);
+            try {
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    Thread.yield();
+                } else {
+                    Thread.sleep(0, ThreadLocalRandom.current().nextInt(100_000));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                hostActive.decrementAndGet();
+            }
+            return url.equals(pages.get(0)) ? () -> pages.subList(1, pages.size()) : List::of;
+        }
+    }
+
+    private static void checkLimit(final int perHost) {
+        List<String> pages = new ArrayList<>();
+        for (int page = 0; page < PAGES; page++) {
+            pages.add(getUrl(page));
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            LimitCheckingDownloader downloader = new LimitCheckingDownloader(pages);
+            Result result;
+            try (WebCrawler crawler = new WebCrawler(downloader, DOWNLOADERS, 2, perHost)) {
+                result = crawler.download(pages.get(0), 2);
+            }
+            assertEquals(Set.copyOf(pages), new HashSet<>(result.getDownloaded()));
+            assertTrue(result.getErrors().isEmpty());
+            assertTrue(downloader.maxActive.get() <= perHost,
+                    "Per-host limit " + perHost + " exceeded: " + downloader.maxActive.get());
+        }
+    }
+
+    @DisplayName("One download per host")
+    @Test
+    void testSingleDownloadPerHost() {
+        checkLimit(1);
+    }
+
+    @DisplayName("Few downloads per host")
+    @Test
+    void testFewDownloadsPerHost() {
+        checkLimit(3);
+    }
+
+    @DisplayName("Per-host limit above number of downloaders")
+    @Test
+    void testManyDownloadsPerHost() {
+        checkLimit(DOWNLOADERS * 2);
+    }
+}
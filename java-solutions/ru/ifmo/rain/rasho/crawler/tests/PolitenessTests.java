@@ -0,0 +1,154 @@
+package ru.ifmo.rain.rasho.crawler.tests;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.ifmo.rain.rasho.crawler.WebCrawler;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Per-host politeness delay tests")
+class PolitenessTests {
+
+    /**
+     * Starts are recorded a bit after tokens are taken, a thread may be preempted in between.
+     */
+    private static final long TOLERANCE = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static class StartRecordingDownloader implements Downloader {
+        private final List<String> pages;
+        private final ConcurrentMap<String, List<Long>> starts = new ConcurrentHashMap<>();
+
+        StartRecordingDownloader(final List<String> pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        public Document download(final String url) throws IOException {
+            starts.computeIfAbsent(URLUtils.getHost(url), host -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(System.nanoTime());
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return url.equals(pages.get(0)) ? () -> pages.subList(1, pages.size()) : List::of;
+        }
+
+        List<Long> getStarts(final String host) {
+            List<Long> hostStarts = new ArrayList<>(starts.getOrDefault(host, List.of()));
+            Collections.sort(hostStarts);
+            return hostStarts;
+        }
+    }
+
+    private static List<String> getPages(final int hosts, final int pages) {
+        List<String> result = new ArrayList<>();
+        for (int page = 0; page < pages; page++) {
+            result.add("http://host" + page % hosts + ".com/page" + page);
+        }
+        return result;
+    }
+
+    private static void checkSpacing(final int burst) {
+        Duration delay = Duration.ofMillis(50);
+        List<String> pages = getPages(3, 30);
+        StartRecordingDownloader downloader = new StartRecordingDownloader(pages);
+        try (WebCrawler crawler = new WebCrawler(downloader, 2, 1, 10, null, delay, burst)) {
+            Result result = crawler.download(pages.get(0), 2);
+            assertEquals(Set.copyOf(pages), new HashSet<>(result.getDownloaded()));
+        }
+        for (Map.Entry<String, List<Long>> entry : downloader.starts.entrySet()) {
+            List<Long> starts = downloader.getStarts(entry.getKey());
+            for (int i = 0; i < starts.size(); i++) {
+                for (int j = i + burst; j < starts.size(); j++) {
+                    long elapsed = starts.get(j) - starts.get(i) + TOLERANCE;
+                    assertTrue(elapsed >= (j - i - burst + 1) * delay.toNanos(),
+                            "Starts " + i + " and " + j + " of " + entry.getKey() + " are too close: "
+                                    + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+                }
+            }
+        }
+    }
+
+    @DisplayName("Starts of a host are spaced by the delay")
+    @Test
+    void testSpacing() {
+        checkSpacing(1);
+    }
+
+    @DisplayName("Starts of a host exceed the delay only within the burst")
+    @Test
+    void testBurst() {
+        checkSpacing(3);
+    }
+
+    @DisplayName("Other hosts are served while one is throttled")
+    @Test
+    void testOtherHosts() {
+        List<String> pages = new ArrayList<>();
+        pages.add("http://root.com/");
+        for (int page = 0; page < 40; page++) {
+            pages.add(page % 4 == 0 ? "http://throttled.com/page" + page : "http://other" + page + ".com/");
+        }
+        StartRecordingDownloader downloader = new StartRecordingDownloader(pages);
+        try (WebCrawler crawler = new WebCrawler(downloader, 1, 1, 10, null, Duration.ofMillis(200), 1)) {
+            Result result = crawler.download(pages.get(0), 2);
+            assertEquals(Set.copyOf(pages), new HashSet<>(result.getDownloaded()));
+        }
+        long second = downloader.getStarts("throttled.com").get(1);
+        for (String page : pages) {
+            String host = page.substring("http://".length(), page.indexOf('/', "http://".length()));
+            if (host.startsWith("other")) {
+                assertTrue(downloader.getStarts(host).get(0) < second, "Host " + host + " waited for throttled one");
+            }
+        }
+    }
+
+    @DisplayName("Throttled downloads are cancelled on close")
+    @Test
+    void testClose() throws InterruptedException, ExecutionException {
+        List<String> pages = getPages(1, 20);
+        StartRecordingDownloader downloader = new StartRecordingDownloader(pages);
+        WebCrawler crawler = new WebCrawler(downloader, 2, 1, 10, null, Duration.ofMillis(100), 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Result> future = executor.submit(() -> crawler.download(pages.get(0), 2));
+            Thread.sleep(250);
+            crawler.close();
+            Result result = future.get(5, TimeUnit.SECONDS);
+
+            Set<String> completed = new HashSet<>(result.getDownloaded());
+            completed.addAll(result.getErrors().keySet());
+            assertEquals(Set.copyOf(pages), completed);
+            assertFalse(result.getErrors().isEmpty(), "No downloads cancelled");
+            assertTrue(downloader.getStarts("host0.com").size() < pages.size());
+        } catch (TimeoutException e) {
+            throw new AssertionError("Crawl not finished after close", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+#!/bin/bash
+
+SCRIPTS_PATH=$( cd "$(dirname "$0")" >/dev/null 2>&1 ; pwd -P )
+ROOT_DIR=$(dirname ${SCRIPTS_PATH})
+OUT_DIR="out"
+SOURCES_DIR=${ROOT_DIR}/java-solutions
+
+find "${SOURCES_DIR}/ru/ifmo/rain/rasho/concurrent" \
+     "${SOURCES_DIR}/info/kgeorgiy/java/advanced/concurrent" \
+     "${SOURCES_DIR}/info/kgeorgiy/java/advanced/mapper" -name "*.java" ! -path "*/tests/*" > filenames.txt
+javac -cp ${SOURCES_DIR} -d ${ROOT_DIR}/${OUT_DIR} @filenames.txt
+
+rm -rf filenames.txt
+
+pushd ${ROOT_DIR}/${OUT_DIR}
+
+java -Xmx8g -cp . ru.ifmo.rain.rasho.concurrent.benchmarks.ConcurrentBenchmarks $*
+
+popd
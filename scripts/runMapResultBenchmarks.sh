@@ -0,0 +1,36 @@
+#!/bin/bash
+
+# Usage: runMapResultBenchmarks.sh baselineRevision [size [maxThreads [warmupMillis [measurementMillis]]]]
+# Runs MapResultBenchmarks against ParallelMapperImpl of the baseline revision and of the working tree.
+
+SCRIPTS_PATH=$( cd "$(dirname "$0")" >/dev/null 2>&1 ; pwd -P )
+ROOT_DIR=$(dirname ${SCRIPTS_PATH})
+OUT_DIR="out"
+SOURCES_DIR=${ROOT_DIR}/java-solutions
+BENCHMARKS_DIR=ru/ifmo/rain/rasho/concurrent/benchmarks
+BASELINE=$1
+shift
+
+BASELINE_DIR=${ROOT_DIR}/${OUT_DIR}/baseline
+rm -rf ${BASELINE_DIR}
+mkdir -p ${BASELINE_DIR}/sources ${BASELINE_DIR}/classes
+git -C ${ROOT_DIR} archive ${BASELINE} java-solutions/ru/ifmo/rain/rasho/concurrent java-solutions/info/kgeorgiy/java/advanced \
+    | tar -x -C ${BASELINE_DIR}/sources
+cp ${SOURCES_DIR}/${BENCHMARKS_DIR}/BenchmarkRunner.java ${SOURCES_DIR}/${BENCHMARKS_DIR}/MapResultBenchmarks.java \
+   ${BASELINE_DIR}/sources/java-solutions/${BENCHMARKS_DIR}
+
+for TREE in ${BASELINE_DIR}/sources/java-solutions ${SOURCES_DIR}; do
+    find "${TREE}/ru/ifmo/rain/rasho/concurrent" \
+         "${TREE}/info/kgeorgiy/java/advanced/concurrent" \
+         "${TREE}/info/kgeorgiy/java/advanced/mapper" -name "*.java" ! -path "*/tests/*" > filenames.txt
+    if [ ${TREE} == ${SOURCES_DIR} ]; then
+        javac -cp ${TREE} -d ${ROOT_DIR}/${OUT_DIR} @filenames.txt
+    else
+        javac -cp ${TREE} -d ${BASELINE_DIR}/classes @filenames.txt
+    fi
+done
+
+rm -rf filenames.txt
+
+java -Xmx8g -cp ${BASELINE_DIR}/classes ru.ifmo.rain.rasho.concurrent.benchmarks.MapResultBenchmarks baseline $*
+java -Xmx8g -cp ${ROOT_DIR}/${OUT_DIR} ru.ifmo.rain.rasho.concurrent.benchmarks.MapResultBenchmarks current $* | tail -n +2